@@ -0,0 +1,56 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp2023.JmmCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Sources the benchmarks compile. The test resources are read from the folder given by the 'jmm.corpus' property
+ * (the project's test folder by default) and only the files that go through every stage without errors are kept.
+ */
+public class Corpus {
+
+    private static final int SYNTHETIC_CLASSES = 4;
+    private static final int SYNTHETIC_METHODS = 50;
+
+    public static List<String> load(String name, Map<String, String> config) {
+        List<String> sources = switch (name) {
+            case "cpf" -> read("pt/up/fe/comp/cpf");
+            case "cp2" -> read("pt/up/fe/comp/cp2");
+            case "synthetic" -> SyntheticSources.generate(SYNTHETIC_CLASSES, SYNTHETIC_METHODS);
+            default -> throw new RuntimeException("Unknown corpus: " + name);
+        };
+
+        List<String> compilable = new ArrayList<>();
+        for (String source : sources) {
+            if (!new JmmCompiler().compile(source, config).hasErrors()) {
+                compilable.add(source);
+            }
+        }
+
+        if (compilable.isEmpty()) {
+            throw new RuntimeException("Corpus '" + name + "' has no source that compiles");
+        }
+        return compilable;
+    }
+
+    private static List<String> read(String folder) {
+        Path root = Path.of(System.getProperty("jmm.corpus", "test"), folder);
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> path.toString().endsWith(".jmm"))
+                    .sorted()
+                    .map(path -> SpecsIo.read(path.toFile()))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read corpus folder '" + root + "'.", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.OllirErrorException;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.jasmin.JasminBuilder;
+import pt.up.fe.comp2023.ollir.JmmOllirImpl;
+import pt.up.fe.comp2023.semanticAnalysis.JmmAnalysisImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to write the Jasmin code of a single method with two labels per loop, for a growing number of loops. The
+ * time per operation should grow linearly with the number of loops.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LabelBenchmarks {
+
+    @Param({"250", "500", "1000", "2000"})
+    public int loops;
+
+    ClassUnit classUnit;
+
+    @Setup(Level.Trial)
+    public void setup() throws OllirErrorException {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "false");
+        config.put("registerAllocation", "-1");
+        config.put("debug", "false");
+
+        String source = SyntheticSources.generateLoops("Loops", loops);
+        JmmSemanticsResult semanticsResult = new JmmAnalysisImpl()
+                .semanticAnalysis(new SimpleParser().parse(source, config));
+        classUnit = new JmmOllirImpl().toClassUnit(semanticsResult);
+
+        // what the backend does before writing the code, left out of the measurement
+        classUnit.checkMethodLabels();
+        classUnit.buildCFGs();
+        classUnit.buildVarTables();
+    }
+
+    @Benchmark
+    public String toJasmin() {
+        return new JasminBuilder().JasminBuilder(classUnit);
+    }
+}
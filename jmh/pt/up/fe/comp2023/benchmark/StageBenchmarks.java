@@ -0,0 +1,212 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.bytecode.BytecodeBackend;
+import pt.up.fe.comp2023.jasmin.JasminBackendImpl;
+import pt.up.fe.comp2023.ollir.JmmOllirImpl;
+import pt.up.fe.comp2023.semanticAnalysis.JmmAnalysisImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every compiler stage over a whole corpus. Each operation runs one stage on every source of the
+ * corpus; its input is prepared outside the measurement, and rebuilt before every operation when the stage
+ * changes it (constant folding rewrites the AST, register allocation and both backends rebuild the CFGs).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmarks {
+
+    @State(Scope.Thread)
+    public static class CorpusState {
+
+        @Param({"cpf", "cp2", "synthetic"})
+        public String corpus;
+
+        // -o -r=0 when true
+        @Param({"false", "true"})
+        public String optimize;
+
+        Map<String, String> config;
+        List<String> sources;
+        List<String> ollirCodes;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            config = new HashMap<>();
+            config.put("optimize", optimize);
+            config.put("registerAllocation", optimize.equals("true") ? "0" : "-1");
+            config.put("debug", "false");
+
+            sources = Corpus.load(corpus, config);
+
+            ollirCodes = new ArrayList<>();
+            for (JmmSemanticsResult semanticsResult : analyse(sources, config)) {
+                JmmOllirImpl optimizer = new JmmOllirImpl();
+                ollirCodes.add(optimizer.toOllir(optimizer.optimize(semanticsResult)).getOllirCode());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ParsedState {
+        List<JmmParserResult> parserResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CorpusState state) {
+            parserResults = parse(state.sources, state.config);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AnalysedState {
+        List<JmmSemanticsResult> semanticsResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CorpusState state) {
+            semanticsResults = analyse(state.sources, state.config);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OptimizedAstState {
+        List<JmmSemanticsResult> semanticsResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CorpusState state) {
+            semanticsResults = new ArrayList<>();
+            for (JmmSemanticsResult semanticsResult : analyse(state.sources, state.config)) {
+                semanticsResults.add(new JmmOllirImpl().optimize(semanticsResult));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OllirState {
+        List<OllirResult> ollirResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CorpusState state) {
+            ollirResults = new ArrayList<>();
+            for (String ollirCode : state.ollirCodes) {
+                ollirResults.add(new OllirResult(ollirCode, state.config));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OptimizedOllirState {
+        List<OllirResult> ollirResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CorpusState state) {
+            ollirResults = new ArrayList<>();
+            for (String ollirCode : state.ollirCodes) {
+                ollirResults.add(new JmmOllirImpl().optimize(new OllirResult(ollirCode, state.config)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(CorpusState state, Blackhole blackhole) {
+        SimpleParser parser = new SimpleParser();
+        for (String source : state.sources) {
+            blackhole.consume(parser.parse(source, state.config));
+        }
+    }
+
+    @Benchmark
+    public void semanticAnalysis(ParsedState parsed, Blackhole blackhole) {
+        JmmAnalysisImpl analysis = new JmmAnalysisImpl();
+        for (JmmParserResult parserResult : parsed.parserResults) {
+            blackhole.consume(analysis.semanticAnalysis(parserResult));
+        }
+    }
+
+    @Benchmark
+    public void optimizeAst(AnalysedState analysed, Blackhole blackhole) {
+        JmmOllirImpl optimizer = new JmmOllirImpl();
+        for (JmmSemanticsResult semanticsResult : analysed.semanticsResults) {
+            blackhole.consume(optimizer.optimize(semanticsResult));
+        }
+    }
+
+    @Benchmark
+    public void toOllir(OptimizedAstState optimized, Blackhole blackhole) {
+        JmmOllirImpl optimizer = new JmmOllirImpl();
+        for (JmmSemanticsResult semanticsResult : optimized.semanticsResults) {
+            blackhole.consume(optimizer.toOllir(semanticsResult));
+        }
+    }
+
+    // the class unit built in memory, without the OLLIR text toOllir writes and parses
+    @Benchmark
+    public void toClassUnit(OptimizedAstState optimized, Blackhole blackhole) {
+        JmmOllirImpl optimizer = new JmmOllirImpl();
+        for (JmmSemanticsResult semanticsResult : optimized.semanticsResults) {
+            blackhole.consume(optimizer.toClassUnit(semanticsResult));
+        }
+    }
+
+    // parsing of the generated OLLIR text, done by the OllirResult constructor inside toOllir
+    @Benchmark
+    public void ollirParse(CorpusState state, Blackhole blackhole) {
+        for (String ollirCode : state.ollirCodes) {
+            blackhole.consume(new OllirResult(ollirCode, state.config));
+        }
+    }
+
+    @Benchmark
+    public void optimizeOllir(OllirState ollir, Blackhole blackhole) {
+        JmmOllirImpl optimizer = new JmmOllirImpl();
+        for (OllirResult ollirResult : ollir.ollirResults) {
+            blackhole.consume(optimizer.optimize(ollirResult));
+        }
+    }
+
+    @Benchmark
+    public void toJasmin(OptimizedOllirState ollir, Blackhole blackhole) {
+        JasminBackendImpl backend = new JasminBackendImpl();
+        for (OllirResult ollirResult : ollir.ollirResults) {
+            blackhole.consume(backend.toJasmin(ollirResult));
+        }
+    }
+
+    @Benchmark
+    public void toClassFile(OptimizedOllirState ollir, Blackhole blackhole) {
+        BytecodeBackend backend = new BytecodeBackend();
+        for (OllirResult ollirResult : ollir.ollirResults) {
+            blackhole.consume(backend.toClassFile(ollirResult));
+        }
+    }
+
+    private static List<JmmParserResult> parse(List<String> sources, Map<String, String> config) {
+        SimpleParser parser = new SimpleParser();
+        List<JmmParserResult> parserResults = new ArrayList<>();
+        for (String source : sources) {
+            parserResults.add(parser.parse(source, config));
+        }
+        return parserResults;
+    }
+
+    private static List<JmmSemanticsResult> analyse(List<String> sources, Map<String, String> config) {
+        JmmAnalysisImpl analysis = new JmmAnalysisImpl();
+        List<JmmSemanticsResult> semanticsResults = new ArrayList<>();
+        for (JmmParserResult parserResult : parse(sources, config)) {
+            semanticsResults.add(analysis.semanticAnalysis(parserResult));
+        }
+        return semanticsResults;
+    }
+}
@@ -0,0 +1,94 @@
+package pt.up.fe.comp2023.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates large Java-- classes mixing the constructs every stage has to handle: fields, arrays, loops,
+ * branches, arithmetic and calls between methods.
+ */
+public class SyntheticSources {
+
+    public static List<String> generate(int numClasses, int numMethods) {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < numClasses; i++) {
+            sources.add(generateClass("Synthetic" + i, numMethods));
+        }
+        return sources;
+    }
+
+    public static String generateClass(String className, int numMethods) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("import io;\n");
+        code.append("class ").append(className).append(" {\n");
+        code.append("    int total;\n");
+        code.append("    int[] values;\n\n");
+
+        for (int i = 0; i < numMethods; i++) {
+            code.append("    public int m").append(i).append("(int a, int b) {\n");
+            code.append("        int i;\n");
+            code.append("        int sum;\n");
+            code.append("        int prev;\n");
+            code.append("        int[] arr;\n");
+            code.append("        boolean done;\n");
+            code.append("        arr = new int[10];\n");
+            code.append("        i = 0;\n");
+            code.append("        sum = ").append(i).append(" * 2 + 3;\n");
+            code.append("        while (i < arr.length) {\n");
+            code.append("            arr[i] = i * a + b - ").append(i % 7).append(";\n");
+            code.append("            sum = sum + arr[i] / (b + 1);\n");
+            code.append("            i = i + 1;\n");
+            code.append("        }\n");
+            code.append("        done = sum < a && !(b < 0);\n");
+            code.append("        if (done) {\n");
+            code.append("            sum = sum - a;\n");
+            code.append("        } else {\n");
+            if (i > 0) {
+                code.append("            prev = this.m").append(i - 1).append("(a, b);\n");
+                code.append("            sum = sum + prev;\n");
+            } else {
+                code.append("            sum = sum + 1;\n");
+            }
+            code.append("        }\n");
+            code.append("        total = total + sum;\n");
+            code.append("        return sum;\n");
+            code.append("    }\n\n");
+        }
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("        ").append(className).append(" s;\n");
+        code.append("        s = new ").append(className).append("();\n");
+        code.append("        io.println(s.m").append(numMethods - 1).append("(3, 4));\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    // A class whose only method runs one loop after the other, each with a label at its start and at its end
+    public static String generateLoops(String className, int numLoops) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("class ").append(className).append(" {\n");
+        code.append("    public int loops(int n) {\n");
+        code.append("        int i;\n");
+        code.append("        int sum;\n");
+        code.append("        sum = 0;\n");
+        for (int i = 0; i < numLoops; i++) {
+            code.append("        i = 0;\n");
+            code.append("        while (i < n) {\n");
+            code.append("            sum = sum + ").append(i).append(";\n");
+            code.append("            i = i + 1;\n");
+            code.append("        }\n");
+        }
+        code.append("        return sum;\n");
+        code.append("    }\n\n");
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+}
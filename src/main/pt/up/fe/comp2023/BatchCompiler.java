@@ -0,0 +1,100 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several Java-- files on a bounded pool of workers, writing the Jasmin and class files of every
+ * successful compilation to the output folder. Class files are assembled by the calling thread, in input order.
+ */
+public class BatchCompiler {
+
+    private final Map<String, String> config;
+    private final int numThreads;
+    private final File outputDir;
+
+    public BatchCompiler(Map<String, String> config) {
+        this.config = config;
+        this.numThreads = Integer.parseInt(config.get("threads"));
+        this.outputDir = new File(config.get("outputDir"));
+    }
+
+    public boolean compile(List<File> inputFiles) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<CompilationResult>> futures = new ArrayList<>();
+
+        for (File inputFile : inputFiles) {
+            futures.add(executor.submit(() -> compileFile(inputFile)));
+        }
+        executor.shutdown();
+
+        Set<String> classNames = new HashSet<>();
+        Map<String, StageStats> statsByFile = new LinkedHashMap<>();
+        int failed = 0;
+        for (int i = 0; i < inputFiles.size(); i++) {
+            CompilationResult result = getResult(futures.get(i));
+
+            if (!result.hasErrors()) {
+                String className = result.getClassName();
+                if (classNames.add(className)) {
+                    JmmCompiler.assemble(result, outputDir);
+                } else {
+                    result.getReports().add(new Report(ReportType.ERROR, Stage.GENERATION, -1,
+                            "Class " + className + " is defined by more than one input file"));
+                }
+            }
+
+            if (result.hasErrors()) {
+                failed++;
+                System.out.println("[FAILED] " + inputFiles.get(i));
+            } else {
+                System.out.println("[OK] " + inputFiles.get(i));
+            }
+            for (Report report : result.getReports()) {
+                System.out.println("\t" + report);
+            }
+            if (result.getStats() != null) {
+                System.out.println(result.getStats().toTable());
+                statsByFile.put(inputFiles.get(i).getPath(), result.getStats());
+            }
+        }
+
+        System.out.println("Compiled " + inputFiles.size() + " files, " + failed + " failed");
+        if (!config.get("stats").isEmpty()) {
+            CompilerStats.writeJson(statsByFile, new File(config.get("stats")));
+        }
+        return failed == 0;
+    }
+
+    private CompilationResult compileFile(File inputFile) {
+        Map<String, String> fileConfig = new HashMap<>(config);
+        fileConfig.put("inputFile", inputFile.getPath());
+
+        return new JmmCompiler().compile(SpecsIo.read(inputFile), fileConfig);
+    }
+
+    private CompilationResult getResult(Future<CompilationResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            CompilationResult result = new CompilationResult();
+            result.getReports().add(Report.newError(Stage.OTHER, -1, -1, "Compilation did not finish", e));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2023.bytecode.BytecodeResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompilationResult {
+
+    private final List<Report> reports;
+    private JmmSemanticsResult semanticsResult;
+    private String ollirCode;
+    private JasminResult jasminResult;
+    private BytecodeResult bytecodeResult;
+    private StageStats stats;
+
+    public CompilationResult() {
+        this.reports = new ArrayList<>();
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public void addReports(List<Report> stageReports) {
+        for (Report report : stageReports) {
+            if (!reports.contains(report)) {
+                reports.add(report);
+            }
+        }
+    }
+
+    public boolean hasErrors() {
+        return reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR);
+    }
+
+    public JmmSemanticsResult getSemanticsResult() {
+        return semanticsResult;
+    }
+
+    public void setSemanticsResult(JmmSemanticsResult semanticsResult) {
+        this.semanticsResult = semanticsResult;
+    }
+
+    // OLLIR code of the class, only written when compiling with debug
+    public String getOllirCode() {
+        return ollirCode;
+    }
+
+    public void setOllirCode(String ollirCode) {
+        this.ollirCode = ollirCode;
+    }
+
+    public JasminResult getJasminResult() {
+        return jasminResult;
+    }
+
+    public void setJasminResult(JasminResult jasminResult) {
+        this.jasminResult = jasminResult;
+    }
+
+    public BytecodeResult getBytecodeResult() {
+        return bytecodeResult;
+    }
+
+    public void setBytecodeResult(BytecodeResult bytecodeResult) {
+        this.bytecodeResult = bytecodeResult;
+    }
+
+    // Name of the generated class, whichever backend produced it
+    public String getClassName() {
+        return bytecodeResult != null ? bytecodeResult.getClassName() : jasminResult.getClassName();
+    }
+
+    public StageStats getStats() {
+        return stats;
+    }
+
+    public void setStats(StageStats stats) {
+        this.stats = stats;
+    }
+}
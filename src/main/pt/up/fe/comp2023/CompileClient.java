@@ -0,0 +1,97 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends compile requests to a running {@link CompileServer} and prints what it answers.
+ */
+public class CompileClient {
+
+    private final Map<String, String> config;
+    private final Path socketPath;
+    private final Gson gson;
+
+    public CompileClient(Map<String, String> config) {
+        this.config = config;
+        this.socketPath = Path.of(config.get("connect"));
+        this.gson = new Gson();
+    }
+
+    public boolean compile(List<File> inputFiles) throws IOException {
+        Map<String, StageStats> statsByFile = new LinkedHashMap<>();
+        int failed = 0;
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+             Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+
+            for (File inputFile : inputFiles) {
+                // the daemon resolves paths against its own working directory
+                Map<String, String> request = new HashMap<>(config);
+                request.put("inputFile", inputFile.getAbsolutePath());
+                request.put("outputDir", new File(config.get("outputDir")).getAbsolutePath());
+
+                CompileResponse response = send(request, reader, writer);
+
+                if (response.isSuccess()) {
+                    System.out.println("[OK] " + inputFile);
+                } else {
+                    failed++;
+                    System.out.println("[FAILED] " + inputFile);
+                }
+                for (String report : response.getReports()) {
+                    System.out.println("\t" + report);
+                }
+                if (response.getStats() != null) {
+                    System.out.println(response.getStats().toTable());
+                    statsByFile.put(inputFile.getPath(), response.getStats());
+                }
+
+                if (config.get("debug").equals("true")) {
+                    if (response.getOllirCode() != null) System.out.println(response.getOllirCode());
+                    if (response.getJasminCode() != null) System.out.println(response.getJasminCode());
+                }
+            }
+        }
+
+        System.out.println("Compiled " + inputFiles.size() + " files, " + failed + " failed");
+        if (!config.get("stats").isEmpty()) {
+            CompilerStats.writeJson(statsByFile, new File(config.get("stats")));
+        }
+        return failed == 0;
+    }
+
+    public void stop() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+             Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+            send(Map.of("command", "stop"), reader, writer);
+        }
+    }
+
+    private CompileResponse send(Map<String, String> request, BufferedReader reader, Writer writer) throws IOException {
+        writer.write(gson.toJson(request));
+        writer.write("\n");
+        writer.flush();
+
+        String line = reader.readLine();
+        if (line == null) {
+            throw new IOException("Compile daemon closed the connection");
+        }
+        return gson.fromJson(line, CompileResponse.class);
+    }
+}
@@ -0,0 +1,59 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answer of the compile daemon to a single request, serialized as one line of JSON.
+ */
+public class CompileResponse {
+
+    private final boolean success;
+    private final List<String> reports;
+    private final String ollirCode;
+    private final String jasminCode;
+    private final StageStats stats;
+
+    public CompileResponse(boolean success, List<String> reports, String ollirCode, String jasminCode,
+                           StageStats stats) {
+        this.success = success;
+        this.reports = reports;
+        this.ollirCode = ollirCode;
+        this.jasminCode = jasminCode;
+        this.stats = stats;
+    }
+
+    public static CompileResponse of(CompilationResult result) {
+        List<String> reports = new ArrayList<>();
+        for (Report report : result.getReports()) {
+            reports.add(report.toString());
+        }
+
+        String ollirCode = result.getOllirCode();
+        String jasminCode = result.getJasminResult() != null ? result.getJasminResult().getJasminCode() : null;
+
+        return new CompileResponse(!result.hasErrors(), reports, ollirCode, jasminCode, result.getStats());
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public List<String> getReports() {
+        return reports;
+    }
+
+    public String getOllirCode() {
+        return ollirCode;
+    }
+
+    public String getJasminCode() {
+        return jasminCode;
+    }
+
+    public StageStats getStats() {
+        return stats;
+    }
+}
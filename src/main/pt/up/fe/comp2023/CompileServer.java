@@ -0,0 +1,134 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsLogs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the compiler loaded in a single JVM and serves compile requests over a Unix-domain socket.
+ * <p>
+ * Each request is one line of JSON holding the compilation config, with the absolute paths of the input file and
+ * of the output folder, and gets back one line of JSON with a {@link CompileResponse}. A request with
+ * {@code "command": "stop"} shuts the daemon down.
+ */
+public class CompileServer {
+
+    private static final Type REQUEST_TYPE = new TypeToken<Map<String, String>>() {}.getType();
+
+    private final Path socketPath;
+    private final ExecutorService executor;
+    private final Gson gson;
+    private volatile ServerSocketChannel serverChannel;
+
+    public CompileServer(Map<String, String> config) {
+        this.socketPath = Path.of(config.get("daemon"));
+        this.executor = Executors.newFixedThreadPool(Integer.parseInt(config.get("threads")));
+        this.gson = new Gson();
+    }
+
+    public void run() throws IOException {
+        Files.deleteIfExists(socketPath);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            serverChannel = server;
+            serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+            SpecsLogs.info("Compile daemon listening on " + socketPath);
+
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                executor.submit(() -> serve(channel));
+            }
+        } catch (ClosedChannelException e) {
+            // stop request
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel;
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+             Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<String, String> request;
+                try {
+                    request = gson.fromJson(line, REQUEST_TYPE);
+                } catch (JsonParseException e) {
+                    reply(writer, error("Malformed request: " + e.getMessage()));
+                    continue;
+                }
+                // a blank line or the JSON null
+                if (request == null) {
+                    reply(writer, error("Malformed request: expected a JSON object, got '" + line + "'"));
+                    continue;
+                }
+
+                if ("stop".equals(request.get("command"))) {
+                    reply(writer, new CompileResponse(true, Collections.emptyList(), null, null, null));
+                    serverChannel.close();
+                    return;
+                }
+
+                CompileResponse response;
+                try {
+                    response = compile(request);
+                } catch (RuntimeException e) {
+                    SpecsLogs.warn("Compilation failed: " + e);
+                    response = error("Compilation failed: " + e);
+                }
+                reply(writer, response);
+            }
+        } catch (IOException e) {
+            SpecsLogs.warn("Lost connection to client: " + e.getMessage());
+        }
+    }
+
+    private CompileResponse compile(Map<String, String> request) {
+        File inputFile = new File(request.getOrDefault("inputFile", ""));
+        if (!inputFile.isFile()) {
+            return error("Expected a path to an existing input file, got '" + inputFile + "'.");
+        }
+
+        CompilationResult result = new JmmCompiler().compile(SpecsIo.read(inputFile), request);
+        if (!result.hasErrors() && request.containsKey("outputDir")) {
+            JmmCompiler.assemble(result, new File(request.get("outputDir")));
+        }
+
+        return CompileResponse.of(result);
+    }
+
+    private CompileResponse error(String message) {
+        return new CompileResponse(false, List.of(message), null, null, null);
+    }
+
+    private void reply(Writer writer, CompileResponse response) throws IOException {
+        writer.write(gson.toJson(response));
+        writer.write("\n");
+        writer.flush();
+    }
+}
@@ -0,0 +1,169 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.GsonBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records the cost of each stage of a compilation running on the current thread. Stages report themselves through
+ * {@link #measure}, which always runs the stage and only records it when a compilation on this thread is being
+ * measured.
+ */
+public class CompilerStats {
+
+    private static final ThreadLocal<CompilerStats> current = new ThreadLocal<>();
+    private static final ThreadLocal<ExecutorService> methodWorkers = new ThreadLocal<>();
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final StageStats total;
+    private final Deque<StageStats> openStages;
+    private final long startWall;
+    private final long startCpu;
+    private final long startAllocated;
+
+    private CompilerStats() {
+        this.total = new StageStats("total");
+        this.openStages = new ArrayDeque<>();
+        this.openStages.push(total);
+        this.startWall = System.nanoTime();
+        this.startCpu = cpuTime();
+        this.startAllocated = allocatedBytes();
+    }
+
+    public static CompilerStats start() {
+        CompilerStats stats = new CompilerStats();
+        current.set(stats);
+        return stats;
+    }
+
+    public StageStats stop() {
+        current.remove();
+        total.add(System.nanoTime() - startWall, cpuTime() - startCpu, allocatedBytes() - startAllocated);
+        return total;
+    }
+
+    public static <T> T measure(String stage, Supplier<T> body) {
+        CompilerStats stats = current.get();
+        if (stats == null) {
+            return body.get();
+        }
+
+        StageStats stageStats = stats.openStages.peek().getChild(stage);
+        stats.openStages.push(stageStats);
+
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        long allocated = allocatedBytes();
+        try {
+            return body.get();
+        } finally {
+            stageStats.add(System.nanoTime() - wall, cpuTime() - cpu, allocatedBytes() - allocated);
+            stats.openStages.pop();
+        }
+    }
+
+    public static void measure(String stage, Runnable body) {
+        measure(stage, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Lets the {@link #measureEach} calls of this thread run on the given workers. Without them the items run one
+     * after the other on the calling thread, which is what batch and daemon workers do, so that their pool bounds
+     * the threads of the whole compilation.
+     */
+    public static void useMethodWorkers(ExecutorService workers) {
+        methodWorkers.set(workers);
+    }
+
+    /**
+     * Runs body on every item, in parallel on the method workers of the calling thread if it has any, and returns
+     * the results in the order of the items. Each item is measured as a stage of its own, named by stageName, under
+     * the stage open on the calling thread. Stages measured inside body are not recorded.
+     */
+    public static <T, R> List<R> measureEach(List<T> items, Function<T, String> stageName, Function<T, R> body) {
+        CompilerStats stats = current.get();
+        StageStats parent = stats == null ? null : stats.openStages.peek();
+        if (parent != null) {
+            // the stages are listed in the order of the items, not in the order they finish
+            items.forEach(item -> parent.getChild(stageName.apply(item)));
+        }
+
+        ExecutorService workers = methodWorkers.get();
+        if (workers == null) {
+            return items.stream().map(item -> measureItem(item, parent, stageName, body)).toList();
+        }
+
+        List<Future<R>> futures = items.stream()
+                .map(item -> workers.submit(() -> measureItem(item, parent, stageName, body))).toList();
+        List<R> results = new ArrayList<>();
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a method", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                if (e.getCause() instanceof Error cause) throw cause;
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static <T, R> R measureItem(T item, StageStats parent, Function<T, String> stageName,
+                                        Function<T, R> body) {
+        if (parent == null) {
+            return body.apply(item);
+        }
+
+        // the calling thread may run items too, and its open stages must not be touched meanwhile
+        CompilerStats threadStats = current.get();
+        current.remove();
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        long allocated = allocatedBytes();
+        try {
+            return body.apply(item);
+        } finally {
+            long elapsedWall = System.nanoTime() - wall;
+            long elapsedCpu = cpuTime() - cpu;
+            long elapsedAllocated = allocatedBytes() - allocated;
+            synchronized (parent) {
+                parent.getChild(stageName.apply(item)).add(elapsedWall, elapsedCpu, elapsedAllocated);
+            }
+            if (threadStats != null) {
+                current.set(threadStats);
+            }
+        }
+    }
+
+    // Writes the stats of every compiled file as a JSON object indexed by the path of the file
+    public static void writeJson(Map<String, StageStats> statsByFile, File jsonFile) {
+        SpecsIo.write(jsonFile, new GsonBuilder().setPrettyPrinting().create().toJson(statsByFile));
+    }
+
+    private static long cpuTime() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes() {
+        return threadBean.isThreadAllocatedMemorySupported() ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+}
@@ -0,0 +1,106 @@
+package pt.up.fe.comp2023;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.jasmin.JasminUtils;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.bytecode.BytecodeBackend;
+import pt.up.fe.comp2023.bytecode.BytecodeResult;
+import pt.up.fe.comp2023.jasmin.JasminBackendImpl;
+import pt.up.fe.comp2023.ollir.JmmOllirImpl;
+import pt.up.fe.comp2023.ollir.OllirPrinter;
+import pt.up.fe.comp2023.semanticAnalysis.JmmAnalysisImpl;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Runs every compilation stage over a single Java-- source, stopping at the first stage that reports errors.
+ */
+public class JmmCompiler {
+
+    static {
+        // AntlrParser finds the starting rule through a method cache that is not thread-safe,
+        // filling it once here leaves concurrent compilations with read-only lookups
+        SpecsSystem.getMethod(JavammParser.class, new SimpleParser().getDefaultRule());
+    }
+
+    public CompilationResult compile(String code, Map<String, String> config) {
+        CompilationResult result = new CompilationResult();
+        CompilerStats stats = config.getOrDefault("stats", "").isEmpty() ? null : CompilerStats.start();
+
+        try {
+            JmmParserResult parserResult = new SimpleParser().parse(code, config);
+            result.addReports(parserResult.getReports());
+            if (result.hasErrors()) return result;
+
+            JmmSemanticsResult semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+            result.setSemanticsResult(semanticsResult);
+            result.addReports(semanticsResult.getReports());
+            if (result.hasErrors()) return result;
+
+            JmmOllirImpl optimizer = new JmmOllirImpl();
+            semanticsResult = optimizer.optimize(semanticsResult);
+
+            // the backends read the class unit built in memory, OLLIR code is only written to be shown
+            ClassUnit classUnit = optimizer.toClassUnit(semanticsResult);
+            result.addReports(optimizer.optimize(classUnit, config));
+            if (config.getOrDefault("debug", "false").equals("true")) {
+                result.setOllirCode(OllirPrinter.print(classUnit));
+            }
+            if (result.hasErrors()) return result;
+
+            if (config.getOrDefault("backend", "jasmin").equals("bytecode")) {
+                BytecodeResult bytecodeResult = new BytecodeBackend().toClassFile(classUnit);
+                result.setBytecodeResult(bytecodeResult);
+                result.addReports(bytecodeResult.getReports());
+            } else {
+                JasminResult jasminResult = new JasminBackendImpl().toJasmin(classUnit, config);
+                result.setJasminResult(jasminResult);
+                result.addReports(jasminResult.getReports());
+            }
+
+        } catch (RuntimeException e) {
+            result.getReports().add(Report.newError(Stage.OTHER, -1, -1, "Exception during compilation: " + e.getMessage(), e));
+        } finally {
+            if (stats != null) {
+                result.setStats(stats.stop());
+            }
+        }
+
+        return result;
+    }
+
+    // Writes the class file of a successful compilation to the output folder
+    public static void assemble(CompilationResult result, File outputDir) {
+        BytecodeResult bytecodeResult = result.getBytecodeResult();
+        if (bytecodeResult == null) {
+            assembleJasmin(result, outputDir);
+            return;
+        }
+
+        try {
+            bytecodeResult.write(outputDir);
+        } catch (RuntimeException e) {
+            result.getReports().add(Report.newError(Stage.GENERATION, -1, -1, "Could not write " + bytecodeResult.getClassName() + ".class", e));
+        }
+    }
+
+    // Writes the Jasmin code to the output folder and assembles it, one class at a time
+    private static synchronized void assembleJasmin(CompilationResult result, File outputDir) {
+        JasminResult jasminResult = result.getJasminResult();
+        File jasminFile = new File(outputDir, jasminResult.getClassName() + ".j");
+
+        try {
+            SpecsIo.write(jasminFile, jasminResult.getJasminCode());
+            JasminUtils.assemble(jasminFile, outputDir);
+        } catch (RuntimeException e) {
+            result.getReports().add(Report.newError(Stage.GENERATION, -1, -1, "Could not assemble " + jasminFile, e));
+        }
+    }
+}
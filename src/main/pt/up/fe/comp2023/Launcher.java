@@ -1,17 +1,28 @@
 package pt.up.fe.comp2023;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
+import org.specs.comp.ollir.ClassUnit;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.bytecode.BytecodeBackend;
+import pt.up.fe.comp2023.bytecode.BytecodeResult;
 import pt.up.fe.comp2023.jasmin.JasminBackendImpl;
 import pt.up.fe.comp2023.ollir.JmmOllirImpl;
+import pt.up.fe.comp2023.ollir.OllirPrinter;
 import pt.up.fe.comp2023.semanticAnalysis.JmmAnalysisImpl;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsLogs;
@@ -26,17 +37,60 @@ public class Launcher {
         // Parse arguments as a map with predefined options
         var config = parseArgs(args);
 
-        // Get input file
-        File inputFile = new File(config.get("inputFile"));
+        // Keep the compiler resident and serve requests from clients
+        if (!config.get("daemon").isEmpty()) {
+            try {
+                new CompileServer(config).run();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not run compile daemon on '" + config.get("daemon") + "'.", e);
+            }
+            return;
+        }
+
+        // Forward the compilation to a running daemon
+        if (!config.get("connect").isEmpty()) {
+            boolean success;
+            try {
+                CompileClient client = new CompileClient(config);
+                if (config.get("stop").equals("true")) {
+                    client.stop();
+                    return;
+                }
+                success = client.compile(getInputFiles(config.get("inputFile")));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not reach compile daemon on '" + config.get("connect") + "'.", e);
+            }
+            if (!success) {
+                System.exit(1);
+            }
+            return;
+        }
 
-        // Check if file exists
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Expected a path to an existing input file, got '" + inputFile + "'.");
+        // Get input files, a folder or several -i arguments compile in batch mode
+        List<File> inputFiles = getInputFiles(config.get("inputFile"));
+        if (inputFiles.size() != 1 || new File(config.get("inputFile")).isDirectory()) {
+            boolean success = new BatchCompiler(config).compile(inputFiles);
+            if (!success) {
+                System.exit(1);
+            }
+            return;
         }
+        File inputFile = inputFiles.get(0);
 
         // Read contents of input file
         String code = SpecsIo.read(inputFile);
 
+        // Lower the methods of the class in parallel, on at most as many threads as -j allows
+        ExecutorService methodWorkers = Executors.newFixedThreadPool(Integer.parseInt(config.get("threads")), task -> {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompilerStats.useMethodWorkers(methodWorkers);
+
+        // Measure every stage when asked with -stats
+        CompilerStats stats = config.get("stats").isEmpty() ? null : CompilerStats.start();
+
         // Instantiate JmmParser
         SimpleParser parser = new SimpleParser();
 
@@ -57,15 +111,31 @@ public class Launcher {
         JmmOllirImpl optimizer = new JmmOllirImpl();
         analysisResult = optimizer.optimize(analysisResult);
         TestUtils.noErrors(analysisResult);
-        OllirResult ol = optimizer.toOllir(analysisResult);
-        TestUtils.noErrors(ol);
-        ol = optimizer.optimize(ol);
-        TestUtils.noErrors(ol);
+        ClassUnit classUnit = optimizer.toClassUnit(analysisResult);
+        TestUtils.noErrors(optimizer.optimize(classUnit, config));
         System.out.println("Ollir code: \n");
-        System.out.println(ol.getOllirCode());
+        System.out.println(OllirPrinter.print(classUnit));
+
+        // Write the class file directly, without Jasmin
+        if (config.get("backend").equals("bytecode")) {
+            BytecodeResult bytecodeResult = new BytecodeBackend().toClassFile(classUnit);
+            if (stats != null) {
+                StageStats total = stats.stop();
+                System.out.println(total.toTable());
+                CompilerStats.writeJson(Map.of(inputFile.getPath(), total), new File(config.get("stats")));
+            }
+            TestUtils.noErrors(bytecodeResult.getReports());
+            System.out.println("Class file written to " + bytecodeResult.write(new File(config.get("outputDir"))));
+            return;
+        }
 
         JasminBackendImpl implementedJasminBackend = new JasminBackendImpl();
-        JasminResult jasminResult = implementedJasminBackend.toJasmin(ol);
+        JasminResult jasminResult = implementedJasminBackend.toJasmin(classUnit, config);
+        if (stats != null) {
+            StageStats total = stats.stop();
+            System.out.println(total.toTable());
+            CompilerStats.writeJson(Map.of(inputFile.getPath(), total), new File(config.get("stats")));
+        }
         jasminResult.compile();
         System.out.println("\n\nJasmin code: \n");
         jasminResult.run();
@@ -74,15 +144,52 @@ public class Launcher {
 
     }
 
+    private static List<File> getInputFiles(String inputPaths) {
+        List<File> inputFiles = new ArrayList<>();
+
+        for (String inputPath : inputPaths.split(File.pathSeparator)) {
+            File input = new File(inputPath);
+
+            if (input.isDirectory()) {
+                try (Stream<Path> paths = Files.walk(input.toPath())) {
+                    paths.filter(path -> path.toString().endsWith(".jmm"))
+                            .sorted()
+                            .forEach(path -> inputFiles.add(path.toFile()));
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not list input folder '" + input + "'.", e);
+                }
+            } else if (input.isFile()) {
+                inputFiles.add(input);
+            } else {
+                throw new RuntimeException("Expected a path to an existing input file, got '" + input + "'.");
+            }
+        }
+
+        if (inputFiles.isEmpty()) {
+            throw new RuntimeException("No .jmm files found in '" + inputPaths + "'.");
+        }
+
+        return inputFiles;
+    }
+
     private static Map<String, String> parseArgs(String[] args) {
         SpecsLogs.info("Executing with args: " + Arrays.toString(args));
 
-        // Create config: jmm [-r=<num>] [-o] [-d] -i=<input file.jmm>
+        // Create config: jmm [-r=<num>] [-o] [-d] [-j=<threads>] [-out=<output folder>] [-stats[=<file.json>]] [-backend=<jasmin|bytecode>] -i=<input file.jmm or folder>...
+        //                jmm -daemon=<socket> [-j=<threads>]
+        //                jmm -connect=<socket> [-r=<num>] [-o] [-d] [-out=<output folder>] [-stats[=<file.json>]] [-backend=<jasmin|bytecode>] (-i=<input>... | -stop)
         Map<String, String> config = new HashMap<>();
         config.put("inputFile", "");
         config.put("optimize", "false");
         config.put("registerAllocation", "-1");
         config.put("debug", "false");
+        config.put("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        config.put("outputDir", "out");
+        config.put("daemon", "");
+        config.put("connect", "");
+        config.put("stop", "false");
+        config.put("stats", "");
+        config.put("backend", "jasmin");
 
         // parseArgs
         for (String arg : args) {
@@ -122,7 +229,57 @@ public class Launcher {
                     if (word.length != 2) {
                         throw new RuntimeException("-i requires an argument (input file)");
                     }
-                    config.put("inputFile", word[1]);
+                    String inputFiles = config.get("inputFile");
+                    config.put("inputFile", inputFiles.isEmpty() ? word[1] : inputFiles + File.pathSeparator + word[1]);
+                }
+                case "-j" -> {
+                    if (word.length != 2) {
+                        throw new RuntimeException("-j requires an argument (integer >= 1)");
+                    }
+                    try {
+                        if (Integer.parseInt(word[1]) < 1) {
+                            throw new RuntimeException("-j requires an integer >= 1");
+                        }
+                    } catch (NumberFormatException e) {
+                        throw new RuntimeException("-j requires an integer >= 1");
+                    }
+                    config.put("threads", word[1]);
+                }
+                case "-out" -> {
+                    if (word.length != 2) {
+                        throw new RuntimeException("-out requires an argument (output folder)");
+                    }
+                    config.put("outputDir", word[1]);
+                }
+                case "-daemon" -> {
+                    if (word.length != 2) {
+                        throw new RuntimeException("-daemon requires an argument (socket file)");
+                    }
+                    config.put("daemon", word[1]);
+                }
+                case "-connect" -> {
+                    if (word.length != 2) {
+                        throw new RuntimeException("-connect requires an argument (socket file)");
+                    }
+                    config.put("connect", word[1]);
+                }
+                case "-stop" -> {
+                    if (word.length != 1) {
+                        throw new RuntimeException("-stop does not require an argument");
+                    }
+                    config.put("stop", "true");
+                }
+                case "-stats" -> {
+                    if (word.length > 2) {
+                        throw new RuntimeException("-stats accepts at most one argument (JSON output file)");
+                    }
+                    config.put("stats", word.length == 2 ? word[1] : "stats.json");
+                }
+                case "-backend" -> {
+                    if (word.length != 2 || !(word[1].equals("jasmin") || word[1].equals("bytecode"))) {
+                        throw new RuntimeException("-backend requires an argument (jasmin or bytecode)");
+                    }
+                    config.put("backend", word[1]);
                 }
                 default -> throw new RuntimeException("Unknown argument: " + arg);
             }
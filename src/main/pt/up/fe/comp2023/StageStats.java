@@ -0,0 +1,74 @@
+package pt.up.fe.comp2023;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wall time, CPU time and allocated bytes spent in a compilation stage, with the stages it is made of.
+ * Measuring the same stage more than once adds to its totals.
+ */
+public class StageStats {
+
+    private final String name;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private final List<StageStats> children;
+
+    public StageStats(String name) {
+        this.name = name;
+        this.children = new ArrayList<>();
+    }
+
+    public StageStats getChild(String childName) {
+        for (StageStats child : children) {
+            if (child.name.equals(childName)) return child;
+        }
+
+        StageStats child = new StageStats(childName);
+        children.add(child);
+        return child;
+    }
+
+    public void add(long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.wallNanos += wallNanos;
+        this.cpuNanos += cpuNanos;
+        this.allocatedBytes += allocatedBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public List<StageStats> getChildren() {
+        return children;
+    }
+
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-40s %12s %12s %16s%n", "Stage", "Wall (ms)", "CPU (ms)", "Allocated (KB)"));
+        appendRows(table, 0);
+        return table.toString();
+    }
+
+    private void appendRows(StringBuilder table, int depth) {
+        table.append(String.format("%-40s %12.3f %12.3f %16d%n", "  ".repeat(depth) + name,
+                wallNanos / 1e6, cpuNanos / 1e6, allocatedBytes / 1024));
+
+        for (StageStats child : children) {
+            child.appendRows(table, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package pt.up.fe.comp2023.bytecode;
+
+import java.util.Arrays;
+
+/**
+ * Growable big-endian byte buffer, with the unsigned writes used by the class file format.
+ */
+public class ByteWriter {
+
+    private byte[] bytes;
+    private int length;
+
+    public ByteWriter() {
+        this.bytes = new byte[64];
+        this.length = 0;
+    }
+
+    public void u1(int value) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) value;
+    }
+
+    public void u2(int value) {
+        ensureCapacity(2);
+        bytes[length++] = (byte) (value >>> 8);
+        bytes[length++] = (byte) value;
+    }
+
+    public void u4(int value) {
+        ensureCapacity(4);
+        bytes[length++] = (byte) (value >>> 24);
+        bytes[length++] = (byte) (value >>> 16);
+        bytes[length++] = (byte) (value >>> 8);
+        bytes[length++] = (byte) value;
+    }
+
+    public void bytes(byte[] values) {
+        bytes(values, values.length);
+    }
+
+    public void bytes(ByteWriter writer) {
+        bytes(writer.bytes, writer.length);
+    }
+
+    // Modified UTF-8 preceded by its length, as in CONSTANT_Utf8 entries
+    public void utf8(String value) {
+        ByteWriter encoded = new ByteWriter();
+        for (char c : value.toCharArray()) {
+            if (c >= 0x01 && c <= 0x7F) {
+                encoded.u1(c);
+            } else if (c <= 0x7FF) {
+                encoded.u1(0xC0 | (c >> 6));
+                encoded.u1(0x80 | (c & 0x3F));
+            } else {
+                encoded.u1(0xE0 | (c >> 12));
+                encoded.u1(0x80 | ((c >> 6) & 0x3F));
+                encoded.u1(0x80 | (c & 0x3F));
+            }
+        }
+        u2(encoded.length);
+        bytes(encoded);
+    }
+
+    public void patchU2(int position, int value) {
+        bytes[position] = (byte) (value >>> 8);
+        bytes[position + 1] = (byte) value;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private void bytes(byte[] values, int count) {
+        ensureCapacity(count);
+        System.arraycopy(values, 0, bytes, length, count);
+        length += count;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package pt.up.fe.comp2023.bytecode;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.OllirErrorException;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilerStats;
+
+import java.util.Collections;
+
+/**
+ * Backend that writes class files straight from the OLLIR class unit, selected with backend=bytecode. Unlike
+ * JasminBackendImpl it produces no assembly text, so nothing has to be parsed back by the Jasmin assembler.
+ */
+public class BytecodeBackend {
+
+    public BytecodeResult toClassFile(OllirResult ollirResult) {
+        return toClassFile(ollirResult.getOllirClass());
+    }
+
+    public BytecodeResult toClassFile(ClassUnit classUnit) {
+        try {
+            classUnit.checkMethodLabels();
+        } catch (OllirErrorException e) {
+            return new BytecodeResult(classUnit.getClassName(), null,
+                    Collections.singletonList(Report.newError(Stage.GENERATION, -1, -1, "Bytecode Exception\n", e)));
+        }
+
+        CompilerStats.measure("cfg", () -> {
+            classUnit.buildCFGs();
+            classUnit.buildVarTables();
+        });
+
+        try {
+            byte[] classFile = CompilerStats.measure("bytecode generation", () -> new ClassFileBuilder(classUnit).build());
+            return new BytecodeResult(classUnit.getClassName(), classFile, Collections.emptyList());
+        } catch (RuntimeException e) {
+            return new BytecodeResult(classUnit.getClassName(), null, Collections.singletonList(
+                    Report.newError(Stage.GENERATION, -1, -1, "Could not write class file: " + e.getMessage(), e)));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package pt.up.fe.comp2023.bytecode;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Class file written directly from OLLIR, the counterpart of a JasminResult for the bytecode backend.
+ */
+public class BytecodeResult {
+
+    private final String className;
+    private final byte[] classFile;
+    private final List<Report> reports;
+
+    public BytecodeResult(String className, byte[] classFile, List<Report> reports) {
+        this.className = className;
+        this.classFile = classFile;
+        this.reports = reports;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public File write(File outputDir) {
+        File file = new File(outputDir, className + ".class");
+        try {
+            Files.createDirectories(outputDir.toPath());
+            Files.write(file.toPath(), classFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+        return file;
+    }
+}
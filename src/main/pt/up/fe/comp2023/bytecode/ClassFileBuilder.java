@@ -0,0 +1,573 @@
+package pt.up.fe.comp2023.bytecode;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.CompilerStats;
+import pt.up.fe.comp2023.ollir.LivenessAnalysis;
+
+import java.util.*;
+
+import static pt.up.fe.comp2023.bytecode.CodeBuffer.*;
+import static pt.up.fe.comp2023.jasmin.JasminUtils.getImpClass;
+import static pt.up.fe.comp2023.jasmin.JasminUtils.getPowerOfTwo;
+
+/**
+ * Writes the class file of an OLLIR class unit, instruction by instruction, without going through Jasmin.
+ * Comparisons are turned into 0 or 1 without branching, so the operand stack is empty at every label and the stack
+ * map frames only describe the locals: the registers of the variables live at the label.
+ */
+public class ClassFileBuilder {
+
+    // Java 8, the stack map frames written are checked by the type-checking verifier
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final String TOP = "T";
+    private static final String INTEGER = "I";
+
+    private final ClassUnit classUnit;
+    private final ConstantPool pool;
+    private final String className;
+    private final String superClass;
+
+    private Method method;
+    private CodeBuffer code;
+    private int maxLocals;
+
+    public ClassFileBuilder(ClassUnit classUnit) {
+        this.classUnit = classUnit;
+        this.pool = new ConstantPool();
+        this.className = classUnit.getClassName();
+
+        String superName = classUnit.getSuperClass();
+        if (superName == null || getImpClass(superName, classUnit).equals("Object")) superName = "java/lang/Object";
+        this.superClass = getImpClass(superName, classUnit);
+    }
+
+    public byte[] build() {
+        // the constant pool is written first, so fields and methods fill it before the class file is put together
+        ByteWriter fields = new ByteWriter();
+        for (Field field : classUnit.getFields()) {
+            writeField(field, fields);
+        }
+        ByteWriter methods = new ByteWriter();
+        for (Method method : classUnit.getMethods()) {
+            CompilerStats.measure(method.getMethodName(), () -> writeMethod(method, methods));
+        }
+        int thisClass = pool.classRef(className);
+        int superClassRef = pool.classRef(superClass);
+
+        ByteWriter classFile = new ByteWriter();
+        classFile.u4(0xCAFEBABE);
+        classFile.u2(0);
+        classFile.u2(MAJOR_VERSION);
+        pool.writeTo(classFile);
+        classFile.u2(ACC_PUBLIC | ACC_SUPER);
+        classFile.u2(thisClass);
+        classFile.u2(superClassRef);
+        classFile.u2(0);
+        classFile.u2(classUnit.getNumFields());
+        classFile.bytes(fields);
+        classFile.u2(classUnit.getNumMethods());
+        classFile.bytes(methods);
+        classFile.u2(0);
+        return classFile.toByteArray();
+    }
+
+    private void writeField(Field field, ByteWriter out) {
+        out.u2(accessFlags(field.getFieldAccessModifier(), field.isStaticField(), field.isFinalField()));
+        out.u2(pool.utf8(field.getFieldName()));
+        out.u2(pool.utf8(descriptor(field.getFieldType())));
+
+        if (field.isInitialized()) {
+            out.u2(1);
+            out.u2(pool.utf8("ConstantValue"));
+            out.u4(2);
+            out.u2(pool.integer(field.getInitialValue()));
+        } else {
+            out.u2(0);
+        }
+    }
+
+    private void writeMethod(Method method, ByteWriter out) {
+        this.method = method;
+        this.code = new CodeBuffer(pool);
+        this.maxLocals = getMaxLocals(method);
+
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Element param : method.getParams()) {
+            descriptor.append(descriptor(param.getType()));
+        }
+        descriptor.append(")").append(descriptor(method.getReturnType()));
+
+        out.u2(accessFlags(method.getMethodAccessModifier(), method.isStaticMethod(), method.isFinalMethod()));
+        out.u2(pool.utf8(method.isConstructMethod() ? "<init>" : method.getMethodName()));
+        out.u2(pool.utf8(descriptor.toString()));
+
+        writeInstructions();
+        byte[] bytecode = code.toByteArray();
+
+        ByteWriter attribute = new ByteWriter();
+        attribute.u2(code.getMaxStack());
+        attribute.u2(maxLocals);
+        attribute.u4(bytecode.length);
+        attribute.bytes(bytecode);
+        attribute.u2(0);
+        if (code.hasFrames()) {
+            ByteWriter stackMapTable = code.getStackMapTable();
+            attribute.u2(1);
+            attribute.u2(pool.utf8("StackMapTable"));
+            attribute.u4(stackMapTable.length());
+            attribute.bytes(stackMapTable);
+        } else {
+            attribute.u2(0);
+        }
+
+        out.u2(1);
+        out.u2(pool.utf8("Code"));
+        out.u4(attribute.length());
+        out.bytes(attribute);
+    }
+
+    private void writeInstructions() {
+        LivenessAnalysis liveness = new LivenessAnalysis(method);
+        liveness.analyse();
+
+        Map<Instruction, List<String>> labels = new HashMap<>();
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            labels.computeIfAbsent(label.getValue(), instruction -> new ArrayList<>()).add(label.getKey());
+        }
+
+        Instruction previous = null;
+        for (Instruction instruction : method.getInstructions()) {
+            List<String> instructionLabels = labels.getOrDefault(instruction, Collections.emptyList());
+            for (String label : instructionLabels) {
+                code.label(label);
+            }
+            // instructions after a goto or return can only be reached by a jump, or not at all
+            if (!instructionLabels.isEmpty() || endsFlow(previous)) {
+                code.frame(frameLocals(liveness.getLiveIn(instruction)));
+            }
+
+            writeInstruction(instruction);
+            previous = instruction;
+        }
+
+        boolean returns = previous != null && previous.getInstType() == InstructionType.RETURN;
+        if (!returns && method.getReturnType().getTypeOfElement() == ElementType.VOID) {
+            if (endsFlow(previous)) code.frame(frameLocals(Collections.emptySet()));
+            code.op(RETURN, 0);
+        }
+    }
+
+    private void writeInstruction(Instruction instruction) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> writeAssign((AssignInstruction) instruction);
+            case GOTO -> code.jump(GOTO, ((GotoInstruction) instruction).getLabel(), 0);
+            case BRANCH -> writeBranch((CondBranchInstruction) instruction);
+            case RETURN -> writeReturn((ReturnInstruction) instruction);
+            case PUTFIELD -> writePutField((PutFieldInstruction) instruction);
+            case CALL -> {
+                writeCall((CallInstruction) instruction);
+                if (((CallInstruction) instruction).getReturnType().getTypeOfElement() != ElementType.VOID) {
+                    code.op(POP, -1);
+                }
+            }
+            default -> {
+                writeValue(instruction);
+                code.op(POP, -1);
+            }
+        }
+    }
+
+    // Instructions that leave one value on the stack
+    private void writeValue(Instruction instruction) {
+        switch (instruction.getInstType()) {
+            case NOPER -> load(((SingleOpInstruction) instruction).getSingleOperand());
+            case BINARYOPER -> writeBinaryOp((BinaryOpInstruction) instruction);
+            case UNARYOPER -> writeUnaryOp((UnaryOpInstruction) instruction);
+            case CALL -> writeCall((CallInstruction) instruction);
+            case GETFIELD -> writeGetField((GetFieldInstruction) instruction);
+            default -> throw new IllegalArgumentException("Unsupported instruction " + instruction.getInstType());
+        }
+    }
+
+    private void writeAssign(AssignInstruction assign) {
+        Operand dest = (Operand) assign.getDest();
+
+        if (dest instanceof ArrayOperand array) {
+            code.local(ALOAD, register(array.getName()), 1);
+            load(array.getIndexOperands().get(0));
+            writeValue(assign.getRhs());
+            code.op(IASTORE, -3);
+            return;
+        }
+
+        if (writeIncrement(dest, assign.getRhs())) return;
+
+        writeValue(assign.getRhs());
+        code.local(isInteger(dest.getType()) ? ISTORE : ASTORE, register(dest.getName()), -1);
+    }
+
+    // a = a + c, a = c + a and a = a - c become an iinc when c fits in a signed byte
+    private boolean writeIncrement(Operand dest, Instruction rhs) {
+        if (!(rhs instanceof BinaryOpInstruction binary)) return false;
+        OperationType op = binary.getOperation().getOpType();
+        Element left = binary.getLeftOperand();
+        Element right = binary.getRightOperand();
+
+        Integer increment = null;
+        if (op == OperationType.ADD && isVariable(left, dest) && right instanceof LiteralElement literal) {
+            increment = Integer.parseInt(literal.getLiteral());
+        } else if (op == OperationType.ADD && isVariable(right, dest) && left instanceof LiteralElement literal) {
+            increment = Integer.parseInt(literal.getLiteral());
+        } else if (op == OperationType.SUB && isVariable(left, dest) && right instanceof LiteralElement literal) {
+            increment = -Integer.parseInt(literal.getLiteral());
+        }
+
+        if (increment == null || increment < -128 || increment > 127) return false;
+        code.iinc(register(dest.getName()), increment);
+        return true;
+    }
+
+    private void writeBinaryOp(BinaryOpInstruction instruction) {
+        Element left = instruction.getLeftOperand();
+        Element right = instruction.getRightOperand();
+
+        switch (instruction.getOperation().getOpType()) {
+            case ADD -> writeArithmetic(left, right, IADD);
+            case SUB -> writeArithmetic(left, right, ISUB);
+            case MUL -> {
+                if (!writePowerOfTwo(left, right, true) && !writePowerOfTwo(right, left, true)) {
+                    writeArithmetic(left, right, IMUL);
+                }
+            }
+            case DIV -> {
+                if (!writePowerOfTwo(left, right, false)) writeArithmetic(left, right, IDIV);
+            }
+            case ANDB -> writeArithmetic(left, right, IAND);
+            case ORB -> writeArithmetic(left, right, IOR);
+            case LTH -> writeLessThan(left, right, false);
+            case GTH -> writeLessThan(right, left, false);
+            case GTE -> writeLessThan(left, right, true);
+            case LTE -> writeLessThan(right, left, true);
+            default -> throw new IllegalArgumentException("Unsupported operation " + instruction.getOperation().getOpType());
+        }
+    }
+
+    private void writeArithmetic(Element left, Element right, int opcode) {
+        load(left);
+        load(right);
+        code.op(opcode, -1);
+    }
+
+    // x * 2 is x + x, other multiplications and the divisions by a power of two are shifts
+    private boolean writePowerOfTwo(Element value, Element power, boolean multiply) {
+        int shift = getPowerOfTwo(power);
+        if (shift < 0) return false;
+
+        load(value);
+        if (shift == 0) return true;
+
+        if (multiply && shift == 1) {
+            code.op(DUP, 1);
+            code.op(IADD, -1);
+        } else if (multiply) {
+            code.pushInt(shift);
+            code.op(ISHL, -1);
+        } else {
+            // the shift rounds down, so negative values get 2^shift - 1 added first to round towards zero like idiv
+            code.op(DUP, 1);
+            code.pushInt(31);
+            code.op(ISHR, -1);
+            code.pushInt(32 - shift);
+            code.op(IUSHR, -1);
+            code.op(IADD, -1);
+            code.pushInt(shift);
+            code.op(ISHR, -1);
+        }
+        return true;
+    }
+
+    // left < right is the sign bit of left - right, subtracted as longs so it cannot overflow
+    private void writeLessThan(Element left, Element right, boolean negate) {
+        load(left);
+        if (isZero(right)) {
+            code.pushInt(31);
+            code.op(IUSHR, -1);
+        } else {
+            code.op(I2L, 1);
+            load(right);
+            code.op(I2L, 1);
+            code.op(LSUB, -2);
+            code.pushInt(63);
+            code.op(LUSHR, -1);
+            code.op(L2I, -1);
+        }
+
+        if (negate) {
+            code.pushInt(1);
+            code.op(IXOR, -1);
+        }
+    }
+
+    private void writeUnaryOp(UnaryOpInstruction instruction) {
+        OperationType op = instruction.getOperation().getOpType();
+        if (op != OperationType.NOTB && op != OperationType.NOT) {
+            throw new IllegalArgumentException("Unsupported operation " + op);
+        }
+        load(instruction.getOperand());
+        code.pushInt(1);
+        code.op(IXOR, -1);
+    }
+
+    private void writeBranch(CondBranchInstruction instruction) {
+        Instruction condition = instruction.getCondition();
+        String label = instruction.getLabel();
+
+        if (condition instanceof BinaryOpInstruction binary) {
+            Integer compare = switch (binary.getOperation().getOpType()) {
+                case LTH -> IF_ICMPLT;
+                case GTE -> IF_ICMPGE;
+                case GTH -> IF_ICMPGT;
+                case LTE -> IF_ICMPLE;
+                default -> null;
+            };
+            if (compare != null) {
+                load(binary.getLeftOperand());
+                if (isZero(binary.getRightOperand())) {
+                    // iflt, ifge, ifgt and ifle sit six opcodes before their two operand versions
+                    code.jump(compare - 6, label, -1);
+                } else {
+                    load(binary.getRightOperand());
+                    code.jump(compare, label, -2);
+                }
+                return;
+            }
+        } else if (condition instanceof UnaryOpInstruction unary && unary.getOperation().getOpType() == OperationType.NOTB) {
+            load(unary.getOperand());
+            code.jump(IFEQ, label, -1);
+            return;
+        }
+
+        writeValue(condition);
+        code.jump(IFNE, label, -1);
+    }
+
+    private void writeReturn(ReturnInstruction instruction) {
+        if (!instruction.hasReturnValue()) {
+            code.op(RETURN, 0);
+            return;
+        }
+        load(instruction.getOperand());
+        code.op(isInteger(instruction.getOperand().getType()) ? IRETURN : ARETURN, -1);
+    }
+
+    private void writeGetField(GetFieldInstruction instruction) {
+        Element object = instruction.getFirstOperand();
+        Operand field = (Operand) instruction.getSecondOperand();
+        load(object);
+        code.opShort(GETFIELD, pool.fieldRef(owner(object), field.getName(), descriptor(field.getType())), 0);
+    }
+
+    private void writePutField(PutFieldInstruction instruction) {
+        Element object = instruction.getFirstOperand();
+        Operand field = (Operand) instruction.getSecondOperand();
+        load(object);
+        load(instruction.getThirdOperand());
+        code.opShort(PUTFIELD, pool.fieldRef(owner(object), field.getName(), descriptor(field.getType())), -2);
+    }
+
+    private void writeCall(CallInstruction instruction) {
+        Element first = instruction.getFirstArg();
+        List<Element> operands = instruction.getListOfOperands() != null ? instruction.getListOfOperands() : List.of();
+
+        switch (instruction.getInvocationType()) {
+            case invokestatic -> {
+                operands.forEach(this::load);
+                invoke(INVOKESTATIC, getImpClass(((Operand) first).getName(), classUnit), instruction, operands, 0);
+            }
+            case invokevirtual -> {
+                load(first);
+                operands.forEach(this::load);
+                invoke(INVOKEVIRTUAL, owner(first), instruction, operands, 1);
+            }
+            case invokespecial -> {
+                load(first);
+                operands.forEach(this::load);
+                String owner = first.getType().getTypeOfElement() == ElementType.THIS ? superClass : owner(first);
+                invoke(INVOKESPECIAL, owner, instruction, operands, 1);
+            }
+            case NEW -> {
+                if (instruction.getReturnType().getTypeOfElement() == ElementType.ARRAYREF) {
+                    load(operands.get(0));
+                    code.opByte(NEWARRAY, T_INT, 0);
+                } else {
+                    code.opShort(NEW, pool.classRef(getImpClass(((Operand) first).getName(), classUnit)), 1);
+                }
+            }
+            case arraylength -> {
+                load(first);
+                code.op(ARRAYLENGTH, 0);
+            }
+            case ldc -> load(first);
+            default -> throw new IllegalArgumentException("Unsupported call " + instruction.getInvocationType());
+        }
+    }
+
+    private void invoke(int opcode, String owner, CallInstruction instruction, List<Element> operands, int receiver) {
+        String name = opcode == INVOKESPECIAL ? "<init>"
+                : ((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", "");
+
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Element operand : operands) {
+            descriptor.append(descriptor(operand.getType()));
+        }
+        Type returnType = instruction.getReturnType();
+        descriptor.append(")").append(descriptor(returnType));
+
+        int stackChange = -operands.size() - receiver + (returnType.getTypeOfElement() == ElementType.VOID ? 0 : 1);
+        code.opShort(opcode, pool.methodRef(owner, name, descriptor.toString()), stackChange);
+    }
+
+    private void load(Element element) {
+        if (element instanceof LiteralElement literal) {
+            if (element.getType().getTypeOfElement() == ElementType.STRING) {
+                code.loadConstant(pool.string(literal.getLiteral().replace("\"", "")));
+            } else {
+                code.pushInt(Integer.parseInt(literal.getLiteral()));
+            }
+            return;
+        }
+
+        Operand operand = (Operand) element;
+        if (operand.getName().equals("true") || operand.getName().equals("false")) {
+            code.pushInt(operand.getName().equals("true") ? 1 : 0);
+        } else if (operand instanceof ArrayOperand array) {
+            code.local(ALOAD, register(array.getName()), 1);
+            load(array.getIndexOperands().get(0));
+            code.op(IALOAD, -1);
+        } else if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            code.local(ALOAD, 0, 1);
+        } else {
+            code.local(isInteger(operand.getType()) ? ILOAD : ALOAD, register(operand.getName()), 1);
+        }
+    }
+
+    // Full frame locals: 'this' and the registers of the live variables, the other registers are unusable
+    private ByteWriter frameLocals(Set<String> live) {
+        String[] types = new String[maxLocals];
+        if (!method.isStaticMethod()) types[0] = className;
+
+        for (String name : live) {
+            Descriptor variable = method.getVarTable().get(name);
+            int register = variable.getVirtualReg();
+            String type = verificationType(variable.getVarType());
+            types[register] = types[register] == null || types[register].equals(type) ? type : TOP;
+        }
+
+        int count = types.length;
+        while (count > 0 && (types[count - 1] == null || types[count - 1].equals(TOP))) count--;
+
+        ByteWriter locals = new ByteWriter();
+        locals.u2(count);
+        for (int i = 0; i < count; i++) {
+            if (types[i] == null || types[i].equals(TOP)) {
+                locals.u1(0);
+            } else if (types[i].equals(INTEGER)) {
+                locals.u1(1);
+            } else {
+                locals.u1(7);
+                locals.u2(pool.classRef(types[i]));
+            }
+        }
+        return locals;
+    }
+
+    private static int getMaxLocals(Method method) {
+        int maxLocals = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+        for (Descriptor descriptor : method.getVarTable().values()) {
+            if (descriptor.getScope() != VarScope.FIELD) {
+                maxLocals = Math.max(maxLocals, descriptor.getVirtualReg() + 1);
+            }
+        }
+        return maxLocals;
+    }
+
+    private int register(String name) {
+        if (name.equals("this")) return 0;
+        return method.getVarTable().get(name).getVirtualReg();
+    }
+
+    // Class whose field or method is accessed through the given object
+    private String owner(Element object) {
+        if (object.getType().getTypeOfElement() == ElementType.THIS) return className;
+        if (object.getType() instanceof ClassType classType) return getImpClass(classType.getName(), classUnit);
+        return getImpClass(((Operand) object).getName(), classUnit);
+    }
+
+    private String descriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case VOID -> "V";
+            case STRING -> "Ljava/lang/String;";
+            case ARRAYREF -> isStringArray(type) ? "[Ljava/lang/String;" : "[I";
+            case THIS -> "L" + className + ";";
+            case OBJECTREF, CLASS -> "L" + getImpClass(((ClassType) type).getName(), classUnit) + ";";
+        };
+    }
+
+    // Type of a register in a stack map frame: an int, or the class of the reference it holds
+    private String verificationType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32, BOOLEAN -> INTEGER;
+            case ARRAYREF -> descriptor(type);
+            case STRING -> "java/lang/String";
+            case THIS -> className;
+            case OBJECTREF, CLASS -> getImpClass(((ClassType) type).getName(), classUnit);
+            case VOID -> TOP;
+        };
+    }
+
+    private static int accessFlags(AccessModifiers modifier, boolean isStatic, boolean isFinal) {
+        int flags = switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+        if (isStatic) flags |= ACC_STATIC;
+        if (isFinal) flags |= ACC_FINAL;
+        return flags;
+    }
+
+    private static boolean endsFlow(Instruction instruction) {
+        return instruction != null && (instruction.getInstType() == InstructionType.GOTO
+                || instruction.getInstType() == InstructionType.RETURN);
+    }
+
+    private static boolean isInteger(Type type) {
+        return type.getTypeOfElement() == ElementType.INT32 || type.getTypeOfElement() == ElementType.BOOLEAN;
+    }
+
+    // Java-- only has int arrays and the String array of main
+    private static boolean isStringArray(Type type) {
+        return type instanceof ArrayType arrayType && arrayType.getElementType() != null
+                && arrayType.getElementType().getTypeOfElement() == ElementType.STRING;
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
+
+    private static boolean isVariable(Element element, Operand variable) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(variable.getName());
+    }
+}
@@ -0,0 +1,215 @@
+package pt.up.fe.comp2023.bytecode;
+
+import java.util.*;
+
+/**
+ * Bytecode of a single method. Keeps the operand stack depth to compute max_stack, resolves jumps to labels once
+ * the whole method is written, and collects the stack map frames of the method.
+ */
+public class CodeBuffer {
+
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int IALOAD = 0x2e;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int IASTORE = 0x4f;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int IADD = 0x60;
+    public static final int LSUB = 0x65;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int ISHL = 0x78;
+    public static final int ISHR = 0x7a;
+    public static final int IUSHR = 0x7c;
+    public static final int LUSHR = 0x7d;
+    public static final int IAND = 0x7e;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IINC = 0x84;
+    public static final int I2L = 0x85;
+    public static final int L2I = 0x88;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int NEW = 0xbb;
+    public static final int NEWARRAY = 0xbc;
+    public static final int ARRAYLENGTH = 0xbe;
+    public static final int WIDE = 0xc4;
+
+    public static final int T_INT = 10;
+
+    // Position of a jump offset still to be filled, relative to the jump instruction
+    private record Jump(int instruction, int position, String label) {
+    }
+
+    private final ConstantPool pool;
+    private final ByteWriter code;
+    private final Map<String, Integer> labels;
+    private final List<Jump> jumps;
+    private final TreeMap<Integer, ByteWriter> frames;
+    private int stackSize;
+    private int maxStack;
+
+    public CodeBuffer(ConstantPool pool) {
+        this.pool = pool;
+        this.code = new ByteWriter();
+        this.labels = new HashMap<>();
+        this.jumps = new ArrayList<>();
+        this.frames = new TreeMap<>();
+        this.stackSize = 0;
+        this.maxStack = 0;
+    }
+
+    public void op(int opcode, int stackChange) {
+        code.u1(opcode);
+        updateStack(stackChange);
+    }
+
+    public void opByte(int opcode, int operand, int stackChange) {
+        code.u1(opcode);
+        code.u1(operand);
+        updateStack(stackChange);
+    }
+
+    public void opShort(int opcode, int operand, int stackChange) {
+        code.u1(opcode);
+        code.u2(operand);
+        updateStack(stackChange);
+    }
+
+    // Loads and stores use the one byte form for registers 0 to 3, which follow each other per opcode
+    public void local(int opcode, int register, int stackChange) {
+        if (register <= 3) {
+            int shortForm = switch (opcode) {
+                case ILOAD -> 0x1a;
+                case ALOAD -> 0x2a;
+                case ISTORE -> 0x3b;
+                case ASTORE -> 0x4b;
+                default -> throw new IllegalArgumentException("Not a load or store: " + opcode);
+            };
+            op(shortForm + register, stackChange);
+        } else if (register <= 0xFF) {
+            opByte(opcode, register, stackChange);
+        } else {
+            code.u1(WIDE);
+            opShort(opcode, register, stackChange);
+        }
+    }
+
+    public void iinc(int register, int value) {
+        if (register <= 0xFF) {
+            code.u1(IINC);
+            code.u1(register);
+            code.u1(value);
+        } else {
+            code.u1(WIDE);
+            code.u1(IINC);
+            code.u2(register);
+            code.u2(value);
+        }
+    }
+
+    public void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= -128 && value <= 127) {
+            opByte(BIPUSH, value, 1);
+        } else if (value >= -32768 && value <= 32767) {
+            opShort(SIPUSH, value, 1);
+        } else {
+            loadConstant(pool.integer(value));
+        }
+    }
+
+    public void loadConstant(int index) {
+        if (index <= 0xFF) {
+            opByte(LDC, index, 1);
+        } else {
+            opShort(LDC_W, index, 1);
+        }
+    }
+
+    public void jump(int opcode, String label, int stackChange) {
+        jumps.add(new Jump(code.length(), code.length() + 1, label));
+        opShort(opcode, 0, stackChange);
+    }
+
+    // Every label starts an OLLIR instruction, where the operand stack is empty
+    public void label(String label) {
+        labels.put(label, code.length());
+        stackSize = 0;
+    }
+
+    // Locals of the frame at the current position, encoded as in a full_frame
+    public void frame(ByteWriter locals) {
+        frames.put(code.length(), locals);
+    }
+
+    public int length() {
+        return code.length();
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public byte[] toByteArray() {
+        for (Jump jump : jumps) {
+            Integer target = labels.get(jump.label());
+            if (target == null) {
+                throw new IllegalStateException("Jump to undefined label " + jump.label());
+            }
+            int offset = target - jump.instruction();
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Jump to " + jump.label() + " is too far for a 16-bit offset");
+            }
+            code.patchU2(jump.position(), offset);
+        }
+        return code.toByteArray();
+    }
+
+    // StackMapTable attribute body, every frame written as a full_frame with an empty stack
+    public ByteWriter getStackMapTable() {
+        ByteWriter table = new ByteWriter();
+        table.u2(frames.size());
+
+        int previous = -1;
+        for (Map.Entry<Integer, ByteWriter> frame : frames.entrySet()) {
+            table.u1(255);
+            table.u2(frame.getKey() - previous - 1);
+            table.bytes(frame.getValue());
+            table.u2(0);
+            previous = frame.getKey();
+        }
+        return table;
+    }
+
+    public boolean hasFrames() {
+        return !frames.isEmpty();
+    }
+
+    private void updateStack(int stackChange) {
+        stackSize += stackChange;
+        maxStack = Math.max(maxStack, stackSize);
+    }
+}
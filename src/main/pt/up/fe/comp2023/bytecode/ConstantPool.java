@@ -0,0 +1,97 @@
+package pt.up.fe.comp2023.bytecode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file being written. Each entry is added once, and asking for it again returns the index
+ * it was given the first time.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteWriter entries;
+    private final Map<String, Integer> indexes;
+    private int count;
+
+    public ConstantPool() {
+        this.entries = new ByteWriter();
+        this.indexes = new HashMap<>();
+        this.count = 1;
+    }
+
+    public int utf8(String value) {
+        Integer index = indexes.get(UTF8 + ":" + value);
+        if (index != null) return index;
+
+        entries.u1(UTF8);
+        entries.utf8(value);
+        return add(UTF8 + ":" + value);
+    }
+
+    public int integer(int value) {
+        Integer index = indexes.get(INTEGER + ":" + value);
+        if (index != null) return index;
+
+        entries.u1(INTEGER);
+        entries.u4(value);
+        return add(INTEGER + ":" + value);
+    }
+
+    // Internal name of a class, or the descriptor of an array type
+    public int classRef(String name) {
+        return reference(CLASS, utf8(name));
+    }
+
+    public int string(String value) {
+        return reference(STRING, utf8(value));
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return reference(FIELD_REF, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return reference(METHOD_REF, classRef(owner), nameAndType(name, descriptor));
+    }
+
+    public void writeTo(ByteWriter out) {
+        out.u2(count);
+        out.bytes(entries);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return reference(NAME_AND_TYPE, utf8(name), utf8(descriptor));
+    }
+
+    // Entry made of the indexes of other entries
+    private int reference(int tag, int... operands) {
+        StringBuilder key = new StringBuilder().append(tag);
+        for (int operand : operands) {
+            key.append(':').append(operand);
+        }
+        Integer index = indexes.get(key.toString());
+        if (index != null) return index;
+
+        entries.u1(tag);
+        for (int operand : operands) {
+            entries.u2(operand);
+        }
+        return add(key.toString());
+    }
+
+    private int add(String key) {
+        if (count >= 0xFFFF) {
+            throw new IllegalStateException("Constant pool has more than 65534 entries");
+        }
+        indexes.put(key, count);
+        return count++;
+    }
+}
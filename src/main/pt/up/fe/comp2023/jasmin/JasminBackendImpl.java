@@ -6,6 +6,7 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilerStats;
 
 import java.util.*;
 
@@ -13,24 +14,31 @@ public class JasminBackendImpl implements JasminBackend {
 
     @Override
     public JasminResult toJasmin(OllirResult ollirRes) {
+        JasminResult jasminResult = toJasmin(ollirRes.getOllirClass(), ollirRes.getConfig());
+        return new JasminResult(ollirRes, jasminResult.getJasminCode(), jasminResult.getReports());
+    }
 
+    public JasminResult toJasmin(ClassUnit classUnit, Map<String, String> config) {
 
-        ClassUnit classUnit = ollirRes.getOllirClass();
         try {
             classUnit.checkMethodLabels();
         } catch (OllirErrorException e) {
-            return new JasminResult(classUnit.getClassName(), null, Collections.singletonList(Report.newError(Stage.GENERATION, -1, -1, "Jasmin Exception\n", e)));
+            return new JasminResult(classUnit.getClassName(), null, Collections.singletonList(Report.newError(Stage.GENERATION, -1, -1, "Jasmin Exception\n", e)), config);
         }
 
-        classUnit.buildCFGs();
-        classUnit.buildVarTables();
-        String jasminCode = new JasminBuilder().JasminBuilder(classUnit);
+        CompilerStats.measure("cfg", () -> {
+            classUnit.buildCFGs();
+            classUnit.buildVarTables();
+        });
+        List<Report> reports = new ArrayList<>();
+        JasminPeephole peephole = JasminPeephole.fromConfig(config, reports);
+        String jasminCode = CompilerStats.measure("jasmin generation", () -> new JasminBuilder(peephole).JasminBuilder(classUnit));
 
-        if (ollirRes.getConfig().getOrDefault("debug", "false").equals("true")) {
+        if (config.getOrDefault("debug", "false").equals("true")) {
             System.out.println("JASMIN CODE:");
             System.out.println(jasminCode);
         }
 
-        return new JasminResult(ollirRes, jasminCode, Collections.emptyList());
+        return new JasminResult(classUnit.getClassName(), jasminCode, reports, config);
     }
 }
\ No newline at end of file
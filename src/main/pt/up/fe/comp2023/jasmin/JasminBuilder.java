@@ -1,6 +1,7 @@
 package pt.up.fe.comp2023.jasmin;
 
 import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.CompilerStats;
 
 import java.util.*;
 
@@ -9,16 +10,22 @@ import static pt.up.fe.comp2023.jasmin.JasminLimits.*;
 
 
 public class JasminBuilder {
-    static ClassUnit classUnit;
+    ClassUnit classUnit;
     String superClass;
     int localLimit;
-    static int stackMaxSize;
-    static int currentTotal;
     int countStack;
+    JasminPeephole peephole;
 
+    public JasminBuilder() {
+        this(new JasminPeephole(EnumSet.noneOf(JasminPeephole.Rule.class)));
+    }
+
+    public JasminBuilder(JasminPeephole peephole) {
+        this.peephole = peephole;
+    }
 
     public String JasminBuilder(ClassUnit classUnit) {
-        JasminBuilder.classUnit = classUnit;
+        this.classUnit = classUnit;
         StringBuilder code = new StringBuilder();
         code.append(".class public ").append(classUnit.getClassName()).append("\n");
         superClass = classUnit.getSuperClass();
@@ -28,12 +35,22 @@ public class JasminBuilder {
         for (Field field : classUnit.getFields()) {
             code.append(fieldBuild(field));
         }
-        for (Method method : classUnit.getMethods()) {
-            code.append(getMethod(method));
+        // methods only share the class unit, so each one is written in parallel by a builder of its own
+        List<String> methods = CompilerStats.measureEach(classUnit.getMethods(), Method::getMethodName,
+                method -> forMethod().getMethod(method));
+        for (String method : methods) {
+            code.append(method);
         }
         return code.toString();
     }
 
+    private JasminBuilder forMethod() {
+        JasminBuilder builder = new JasminBuilder(peephole);
+        builder.classUnit = classUnit;
+        builder.superClass = superClass;
+        return builder;
+    }
+
     public String fieldBuild(Field field) {
         StringBuilder code = new StringBuilder();
         AccessModifiers accessModifiers = field.getFieldAccessModifier();
@@ -88,8 +105,6 @@ public class JasminBuilder {
         stringBuilder.append(")");
         stringBuilder.append(getJasminType(method.getReturnType())).append("\n");
 
-        currentTotal = 0;
-        stackMaxSize = 0;
         localLimit = updateLocalLimit(method);
 
         String instructionsString = getInstructionsString(method);
@@ -100,9 +115,13 @@ public class JasminBuilder {
             }
         }
 
-        stringBuilder.append("\t.limit stack ").append(getStackMaxSixe()).append("\n").append("\t.limit locals ").append(localLimit).append("\n");
+        List<JasminInstruction> instructions = peephole.optimize(JasminInstruction.parse(instructionsString));
+
+        stringBuilder.append("\t.limit stack ").append(getStackLimit(instructions)).append("\n").append("\t.limit locals ").append(localLimit).append("\n");
 
-        stringBuilder.append(instructionsString);
+        for (JasminInstruction instruction : instructions) {
+            stringBuilder.append(instruction).append("\n");
+        }
 
         stringBuilder.append(".end method\n\n");
         return stringBuilder.toString();
@@ -113,11 +132,15 @@ public class JasminBuilder {
 
         List<Instruction> instructions = method.getInstructions();
 
+        // labels of each instruction, so that they are not searched for every instruction
+        Map<Instruction, List<String>> labels = new IdentityHashMap<>();
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            labels.computeIfAbsent(label.getValue(), instruction -> new ArrayList<>()).add(label.getKey());
+        }
+
         for (Instruction instruction : instructions) {
-            for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
-                if (label.getValue().equals(instruction)) {
-                    newStringBuilder.append(label.getKey()).append(":\n");
-                }
+            for (String label : labels.getOrDefault(instruction, Collections.emptyList())) {
+                newStringBuilder.append(label).append(":\n");
             }
             newStringBuilder.append(getInstruction(instruction, method.getVarTable()));
 
@@ -125,10 +148,7 @@ public class JasminBuilder {
                 CallInstruction inst = (CallInstruction) instruction;
                 ElementType elementType = inst.getReturnType().getTypeOfElement();
 
-                if (elementType != ElementType.VOID) {
-                    newStringBuilder.append("\tpop\n");
-                    updateStackLimit(-1);
-                }
+                if (elementType != ElementType.VOID) newStringBuilder.append("\tpop\n");
             }
         }
         return newStringBuilder.toString();
@@ -165,11 +185,9 @@ public class JasminBuilder {
         if (element instanceof Operand operand) {
             if (operand.getName().equals("false")) {
                 inst.append("\ticonst_0").append("\n");
-                updateStackLimit(1);
                 return inst.toString();
             } else if (operand.getName().equals("true")) {
                 inst.append("\ticonst_1").append("\n");
-                updateStackLimit(1);
                 return inst.toString();
             }
         }
@@ -194,20 +212,14 @@ public class JasminBuilder {
                 else inst.append(parser);
             }
             else inst.append("\tldc ").append(literal);
-
-            updateStackLimit(1);
         }
 
         else if (element instanceof ArrayOperand op) {
 
             inst.append("\taload").append(this.getVarRegister(op.getName(), varTable)).append("\n");
 
-            updateStackLimit(1);
-
             inst.append(loadStack(op.getIndexOperands().get(0), varTable));
             inst.append("\tiaload");
-
-            updateStackLimit(-1);
         }
         else if (element instanceof Operand operand) {
 
@@ -217,7 +229,6 @@ public class JasminBuilder {
                 case THIS -> inst.append("\taload_0");
                 default -> inst.append("Error: SingleOperand ").append(operand.getType().getTypeOfElement()).append("\n");
             }
-            updateStackLimit(1);
         }
         else inst.append("Error: SingleOperand not recognized\n");
 
@@ -252,8 +263,6 @@ public class JasminBuilder {
                     stringBuilder.append(this.loadStack(right, varTable)).append("\t").append("ifgt");
                     stringBuilder.append(printOperation()).append("\n");
 
-                    updateStackLimit(-1);
-
                     return stringBuilder.toString();
                 }
             }
@@ -264,8 +273,6 @@ public class JasminBuilder {
                     stringBuilder.append(this.loadStack(left, varTable)).append("\t").append("iflt");
                     stringBuilder.append(printOperation()).append("\n");
 
-                    updateStackLimit(-1);
-
                     return stringBuilder.toString();
                 }
 
@@ -286,7 +293,6 @@ public class JasminBuilder {
                     stringBuilder.append(this.loadStack(right, varTable)).append("\t").append("ifle");
                     stringBuilder.append(printOperation()).append("\n");
 
-                    updateStackLimit(-1);
                     return stringBuilder.toString();
                 }
             }
@@ -297,7 +303,6 @@ public class JasminBuilder {
                     stringBuilder.append(this.loadStack(left, varTable)).append("\t").append("ifge");
                     stringBuilder.append(printOperation()).append("\n");
 
-                    updateStackLimit(-1);
                     return stringBuilder.toString();
                 }
 
@@ -314,16 +319,52 @@ public class JasminBuilder {
             return stringBuilder.toString();
         }
 
+        if (op == OperationType.MUL || op == OperationType.DIV) {
+            String shift = dealWithPowerOfTwo(op, left, right, varTable);
+            if (shift != null) return shift;
+        }
+
         stringBuilder.append(this.loadStack(left, varTable))
                 .append(this.loadStack(right, varTable)).append("\t")
                 .append(printOpType(binaryOpInstruction.getOperation().getOpType()));
 
-        updateStackLimit(-1);
         stringBuilder.append("\n");
 
         return stringBuilder.toString();
     }
 
+    // x * 2 is x + x, other multiplications and the divisions by a power of two are shifts
+    private String dealWithPowerOfTwo(OperationType op, Element left, Element right, HashMap<String, Descriptor> varTable) {
+        Element value = left;
+        int shift = getPowerOfTwo(right);
+        if (shift < 0 && op == OperationType.MUL) {
+            value = right;
+            shift = getPowerOfTwo(left);
+        }
+        if (shift < 0) return null;
+
+        StringBuilder stringBuilder = new StringBuilder(this.loadStack(value, varTable));
+        if (shift == 0) return stringBuilder.toString();
+
+        if (op == OperationType.MUL && shift == 1) {
+            stringBuilder.append("\tdup\n\tiadd\n");
+        }
+        else if (op == OperationType.MUL) {
+            stringBuilder.append(pushInt(shift)).append("\tishl\n");
+        }
+        else {
+            // the shift rounds down, so negative values get 2^shift - 1 added first to round towards zero like idiv
+            stringBuilder.append("\tdup\n").append(pushInt(31)).append("\tishr\n")
+                    .append(pushInt(32 - shift)).append("\tiushr\n\tiadd\n")
+                    .append(pushInt(shift)).append("\tishr\n");
+        }
+        return stringBuilder.toString();
+    }
+
+    private String pushInt(int value) {
+        return this.loadStack(new LiteralElement(Integer.toString(value), new Type(ElementType.INT32)), null);
+    }
+
     private String printOpType(OperationType operationType) {
         if (operationType == OperationType.ADD) {
             return "iadd";
@@ -364,7 +405,6 @@ public class JasminBuilder {
     }
 
     private String dealWithPutField(PutFieldInstruction putFieldInstruction, HashMap<String, Descriptor> varTable) {
-        updateStackLimit(-2);
         return loadStack(putFieldInstruction.getFirstOperand(), varTable) + loadStack(putFieldInstruction.getThirdOperand(), varTable)
                 + "\tputfield " + getImpClass(((Operand) putFieldInstruction.getFirstOperand()).getName(), classUnit) + "/" + ((Operand)
                 putFieldInstruction.getSecondOperand()).getName() + " " + getJasminType(putFieldInstruction.getSecondOperand().getType()) + "\n";
@@ -397,7 +437,6 @@ public class JasminBuilder {
         Operand destination = (Operand) assignInstruction.getDest();
 
         if (destination instanceof ArrayOperand opDest) {
-            updateStackLimit(1);
             stringBuilder.append("\taload").append(this.getVarRegister(opDest.getName(), varTable)).append("\n").append(loadStack(opDest.getIndexOperands().get(0), varTable));
         }
         else {
@@ -422,7 +461,6 @@ public class JasminBuilder {
                         if (op.getName().equals(destination.getName())) {
                             int literalValue = Integer.parseInt((literal).getLiteral());
                             if (literalValue <= 127) {
-                                updateStackLimit(1);
                                 return "\tiinc " + varTable.get(op.getName()).getVirtualReg() + " " + literalValue + "\n";
                             } else {
                                 dealWithBinaryOper(inst, varTable);
@@ -449,7 +487,6 @@ public class JasminBuilder {
 
                             int literalValue = Integer.parseInt((literal).getLiteral());
                             if ((literalValue <= 128)) {
-                                updateStackLimit(1);
                                 return "\tiinc " + varTable.get(op.getName()).getVirtualReg() + " -" + literalValue + "\n";
                             } else {
                                 dealWithBinaryOper(inst, varTable);
@@ -464,15 +501,12 @@ public class JasminBuilder {
         switch (destination.getType().getTypeOfElement()) {
             case OBJECTREF, THIS, STRING, ARRAYREF:
                 stringBuilder.append("\tastore").append(this.getVarRegister(destination.getName(), varTable)).append("\n");
-                updateStackLimit(-1);
                 break;
             case INT32, BOOLEAN:
                 if (varTable.get(destination.getName()).getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
                     stringBuilder.append("\tiastore").append("\n");
-                    updateStackLimit(-3);
                 } else {
                     stringBuilder.append("\tistore").append(this.getVarRegister(destination.getName(), varTable)).append("\n");
-                    updateStackLimit(-1);
                 }
                 break;
             default:
@@ -547,27 +581,29 @@ public class JasminBuilder {
                         op = "ifne";
                     }
                     case GTE -> {
-                        Element  left = binaryOpInstruction.getLeftOperand();
+                        Element left = binaryOpInstruction.getLeftOperand();
                         Element right = binaryOpInstruction.getRightOperand();
 
                         if (right instanceof LiteralElement && ((LiteralElement) right).getLiteral().equals("0")) {
-                            op = "if_icmpge";
+                            strInst.append(this.loadStack(left, varTable));
+                            op = "ifge";
                         }
                         else {
-                            strInst.append(this.loadStack(right, varTable)).append(this.loadStack(left, varTable));
-                            op = "ifge";
+                            strInst.append(this.loadStack(left, varTable)).append(this.loadStack(right, varTable));
+                            op = "if_icmpge";
                         }
                     }
                     case LTE -> {
-                        Element  left = binaryOpInstruction.getLeftOperand();
+                        Element left = binaryOpInstruction.getLeftOperand();
                         Element right = binaryOpInstruction.getRightOperand();
 
-                        if (left instanceof LiteralElement && ((LiteralElement) left).getLiteral().equals("0")) {
-                            op = "if_icmple";
+                        if (right instanceof LiteralElement && ((LiteralElement) right).getLiteral().equals("0")) {
+                            strInst.append(this.loadStack(left, varTable));
+                            op = "ifle";
                         }
                         else {
                             strInst.append(this.loadStack(left, varTable)).append(this.loadStack(right, varTable));
-                            op = "ifle";
+                            op = "if_icmple";
                         }
                     }
                     default -> {
@@ -583,9 +619,6 @@ public class JasminBuilder {
         }
         strInst.append("\t").append(op).append(" ").append(instruction.getLabel()).append("\n");
 
-        if (op.equals("if_icmplt") || op.equals("if_icmple") || op.equals("if_icmpge")) updateStackLimit(-2);
-        else updateStackLimit(-1);
-
         return strInst.toString();
     }
 
@@ -596,25 +629,21 @@ public class JasminBuilder {
 
     private String dealWithCall(CallInstruction instruction, HashMap<String, Descriptor> varTable) {
         StringBuilder strInst = new StringBuilder();
-        int popper = 0;
 
         switch (instruction.getInvocationType()) {
             case arraylength -> strInst.append(loadStack(instruction.getFirstArg(), varTable)).append("\tarraylength\n");
 
             case NEW -> {
-                popper -= 1;
                 ElementType type =instruction.getReturnType().getTypeOfElement();
                 if (type == ElementType.OBJECTREF) {
                     for (Element element : instruction.getListOfOperands()) {
                         strInst.append(this.loadStack(element, varTable));
-                        popper++;
                     }
                     strInst.append("\tnew ").append(getImpClass(((Operand) instruction.getFirstArg()).getName(), classUnit)).append("\n");
                 }
                 else if (type == ElementType.ARRAYREF) {
                     for (Element element : instruction.getListOfOperands()) {
                         strInst.append(this.loadStack(element, varTable));
-                        popper++;
                     }
                     strInst.append("\tnewarray ");
                     if (instruction.getListOfOperands().get(0).getType().getTypeOfElement() == ElementType.INT32) strInst.append("int\n");
@@ -632,7 +661,6 @@ public class JasminBuilder {
 
                 for (Element element : instruction.getListOfOperands()) {
                     strInst.append(this.loadStack(element, varTable));
-                    popper++;
                 }
                 strInst.append("\tinvokestatic ").append(getImpClass(((Operand) instruction.getFirstArg()).getName(), classUnit)).
                         append("/").append(((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", "")).append("(");
@@ -641,11 +669,8 @@ public class JasminBuilder {
                     strInst.append(getJasminType(element.getType()));
                 }
                 strInst.append(")").append(getJasminType(instruction.getReturnType())).append("\n");
-
-                if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) popper--;
             }
             case invokespecial -> {
-                popper = 1;
                 strInst.append(loadStack(instruction.getFirstArg(), varTable));
 
                 strInst.append("\tinvokespecial ");
@@ -661,15 +686,12 @@ public class JasminBuilder {
                     strInst.append(getJasminType(element.getType()));
                 }
                 strInst.append(")").append(getJasminType(instruction.getReturnType())).append("\n");
-                if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) popper--;
             }
             case invokevirtual -> {
-                popper = 1;
                 strInst.append(loadStack(instruction.getFirstArg(), varTable));
 
                 for (Element element : instruction.getListOfOperands()) {
                     strInst.append(loadStack(element, varTable));
-                    popper++;
                 }
                 strInst.append("\tinvokevirtual ").append(getImpClass(((ClassType) instruction.getFirstArg().getType()).getName(), classUnit)).
                         append("/").append(((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", "")).append("(");
@@ -679,13 +701,10 @@ public class JasminBuilder {
                 }
 
                 strInst.append(")").append(getJasminType(instruction.getReturnType())).append("\n");
-
-                if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) popper--;
             }
 
             default -> strInst.append("Error: call instruction not processed.");
         }
-        updateStackLimit(-popper);
         return strInst.toString();
     }
 }
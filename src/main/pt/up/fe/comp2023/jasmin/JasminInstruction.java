@@ -0,0 +1,99 @@
+package pt.up.fe.comp2023.jasmin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One line of the Jasmin code of a method body, either a label or an instruction with its opcode and argument.
+ * JasminBuilder writes the body as text, which is read back into these to be rewritten and measured.
+ */
+public class JasminInstruction {
+    private final String label;
+    private final String opcode;
+    private final String argument;
+
+    private JasminInstruction(String label, String opcode, String argument) {
+        this.label = label;
+        this.opcode = opcode;
+        this.argument = argument;
+    }
+
+    public static JasminInstruction label(String name) {
+        return new JasminInstruction(name, null, null);
+    }
+
+    public static JasminInstruction instruction(String opcode, String argument) {
+        return new JasminInstruction(null, opcode, argument);
+    }
+
+    public static List<JasminInstruction> parse(String code) {
+        List<JasminInstruction> instructions = new ArrayList<>();
+        for (String line : code.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) continue;
+
+            if (!line.startsWith("\t") && trimmed.endsWith(":")) {
+                instructions.add(label(trimmed.substring(0, trimmed.length() - 1)));
+            }
+            else {
+                String[] words = trimmed.split("\\s+", 2);
+                instructions.add(instruction(words[0], words.length > 1 ? words[1] : null));
+            }
+        }
+        return instructions;
+    }
+
+    public boolean isLabel() {
+        return label != null;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getOpcode() {
+        return opcode;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    public boolean isJump() {
+        return !isLabel() && (opcode.startsWith("if") || opcode.equals("goto"));
+    }
+
+    public boolean isGoto() {
+        return !isLabel() && opcode.equals("goto");
+    }
+
+    // goto and the return instructions never fall through to the next instruction
+    public boolean endsBlock() {
+        return !isLabel() && (opcode.equals("goto") || opcode.endsWith("return"));
+    }
+
+    public boolean isLoad() {
+        return !isLabel() && (opcode.startsWith("iload") || opcode.startsWith("aload"));
+    }
+
+    public boolean isStore() {
+        return !isLabel() && (opcode.startsWith("istore") || opcode.startsWith("astore"));
+    }
+
+    // Local variable read or written by a load, store or iinc, -1 for the other instructions
+    public int getRegister() {
+        if (isLoad() || isStore()) {
+            int separator = opcode.indexOf('_');
+            return Integer.parseInt(separator >= 0 ? opcode.substring(separator + 1) : argument);
+        }
+        if (!isLabel() && opcode.equals("iinc")) return Integer.parseInt(argument.split("\\s+")[0]);
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        if (isLabel()) return label + ":";
+        if (argument == null) return "\t" + opcode;
+        return "\t" + opcode + " " + argument;
+    }
+}
@@ -3,23 +3,13 @@ package pt.up.fe.comp2023.jasmin;
 import org.specs.comp.ollir.Descriptor;
 import org.specs.comp.ollir.Method;
 
-import java.util.Set;
-import java.util.TreeSet;
-
-import static pt.up.fe.comp2023.jasmin.JasminBuilder.currentTotal;
-import static pt.up.fe.comp2023.jasmin.JasminBuilder.stackMaxSize;
+import java.util.*;
 
 
 public class JasminLimits {
-    static Set<Integer> auxCount = new TreeSet<>();
-
-    static public void updateStackLimit(int counter) {
-        currentTotal += counter;
-        stackMaxSize = Math.max(currentTotal, stackMaxSize);
-    }
 
     static public int updateLocalLimit(Method method) {
-        auxCount.clear();
+        Set<Integer> auxCount = new TreeSet<>();
         auxCount.add(0);
         for (Descriptor descriptor : method.getVarTable().values()) {
             auxCount.add(descriptor.getVirtualReg());
@@ -27,7 +17,76 @@ public class JasminLimits {
         return auxCount.size();
     }
 
-    static public int getStackMaxSixe() {
-        return stackMaxSize;
+    /**
+     * Deepest the operand stack gets in the Jasmin code of a method body. The depth is followed from the first
+     * instruction along the fall-through and jump edges, so the limit is exact for the code that was written.
+     */
+    static public int getStackLimit(List<JasminInstruction> instructions) {
+        List<JasminInstruction> code = new ArrayList<>();
+        Map<String, Integer> labels = new HashMap<>();
+        for (JasminInstruction instruction : instructions) {
+            if (instruction.isLabel()) labels.put(instruction.getLabel(), code.size());
+            else code.add(instruction);
+        }
+
+        // depth before each instruction, -1 while no path to it has been followed
+        int[] depths = new int[code.size()];
+        Arrays.fill(depths, -1);
+        Deque<Integer> worklist = new ArrayDeque<>();
+        reach(0, 0, depths, worklist);
+
+        int stackLimit = 0;
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            JasminInstruction instruction = code.get(index);
+            int depth = depths[index] + getStackChange(instruction);
+            stackLimit = Math.max(stackLimit, depth);
+
+            if (instruction.isJump()) {
+                reach(labels.getOrDefault(instruction.getArgument(), -1), depth, depths, worklist);
+            }
+            if (instruction.endsBlock()) continue;
+            reach(index + 1, depth, depths, worklist);
+        }
+        return stackLimit;
+    }
+
+    private static void reach(int index, int depth, int[] depths, Deque<Integer> worklist) {
+        if (index < 0 || index >= depths.length || depths[index] != -1) return;
+        depths[index] = depth;
+        worklist.push(index);
+    }
+
+    private static int getStackChange(JasminInstruction instruction) {
+        String opcode = instruction.getOpcode();
+        // iload_1, iconst_m1, ... have the same effect as the opcode without the suffix
+        String name = opcode.startsWith("if_") ? opcode : opcode.replaceFirst("_.*", "");
+
+        return switch (name) {
+            case "aload", "iload", "iconst", "bipush", "sipush", "ldc", "new", "dup" -> 1;
+            case "astore", "istore", "pop", "iaload", "iadd", "isub", "imul", "idiv", "iand", "ior", "ixor",
+                    "ishl", "ishr", "iushr",
+                    "ifeq", "ifne", "iflt", "ifle", "ifgt", "ifge", "ireturn", "areturn" -> -1;
+            case "if_icmplt", "if_icmple", "if_icmpgt", "if_icmpge", "if_icmpeq", "if_icmpne", "putfield" -> -2;
+            case "iastore" -> -3;
+            case "invokestatic", "invokevirtual", "invokespecial" ->
+                    getInvokeStackChange(opcode, instruction.getArgument());
+            default -> 0;
+        };
+    }
+
+    // Arguments, and the receiver unless the call is static, are popped and the result, if any, is pushed
+    private static int getInvokeStackChange(String opcode, String method) {
+        int open = method.indexOf('(');
+        int close = method.indexOf(')');
+        int change = opcode.equals("invokestatic") ? 0 : -1;
+
+        for (int i = open + 1; i < close; i++) {
+            char type = method.charAt(i);
+            if (type == '[') continue;
+            if (type == 'L') i = method.indexOf(';', i);
+            change--;
+        }
+        return method.charAt(close + 1) == 'V' ? change : change + 1;
     }
 }
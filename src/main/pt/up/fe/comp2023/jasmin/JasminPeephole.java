@@ -0,0 +1,281 @@
+package pt.up.fe.comp2023.jasmin;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+/**
+ * Peephole rewrites over the Jasmin code of a method body, enabled with -o. The rules can be picked with the
+ * "peephole" config entry, a comma separated list of rule names, and are applied until none of them changes the
+ * code any further.
+ */
+public class JasminPeephole {
+
+    public enum Rule {
+        // a store immediately read back, by the only load of that local, is dropped with the load
+        STORE_LOAD,
+        // a comparison with a pushed 0 becomes the single operand comparison
+        ZERO_COMPARE,
+        // a comparison turned into 0 or 1 only to be tested by the next branch jumps to its target directly
+        BOOLEAN_BRANCH,
+        // jumps to a goto jump to its target, and a branch over a goto becomes the opposite branch
+        BRANCH_THREADING,
+        // gotos to the next instruction, and instructions no jump or fall-through can reach, are removed
+        REDUNDANT_GOTO
+    }
+
+    private final Set<Rule> rules;
+
+    public JasminPeephole(Set<Rule> rules) {
+        this.rules = rules.isEmpty() ? EnumSet.noneOf(Rule.class) : EnumSet.copyOf(rules);
+    }
+
+    // Unknown rule names are left out, with a warning added to reports
+    public static JasminPeephole fromConfig(Map<String, String> config, List<Report> reports) {
+        if (!config.getOrDefault("optimize", "false").equals("true")) {
+            return new JasminPeephole(EnumSet.noneOf(Rule.class));
+        }
+
+        String names = config.get("peephole");
+        if (names == null) return new JasminPeephole(EnumSet.allOf(Rule.class));
+
+        Set<Rule> rules = EnumSet.noneOf(Rule.class);
+        for (String name : names.split(",")) {
+            if (name.isBlank()) continue;
+            try {
+                rules.add(Rule.valueOf(name.trim().toUpperCase().replace('-', '_')));
+            } catch (IllegalArgumentException e) {
+                reports.add(Report.newWarn(Stage.OPTIMIZATION, -1, -1, "Unknown peephole rule '" + name.trim()
+                        + "', expected one of " + Arrays.toString(Rule.values()).toLowerCase(), null));
+            }
+        }
+        return new JasminPeephole(rules);
+    }
+
+    public List<JasminInstruction> optimize(List<JasminInstruction> instructions) {
+        if (rules.isEmpty()) return instructions;
+
+        List<JasminInstruction> code = new ArrayList<>(instructions);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            if (rules.contains(Rule.STORE_LOAD)) changed |= removeStoreLoads(code);
+            if (rules.contains(Rule.ZERO_COMPARE)) changed |= compareWithZero(code);
+            if (rules.contains(Rule.BOOLEAN_BRANCH)) changed |= branchOnBooleans(code);
+            if (rules.contains(Rule.BRANCH_THREADING)) changed |= threadBranches(code);
+            if (rules.contains(Rule.REDUNDANT_GOTO)) changed |= removeRedundantGotos(code);
+            // labels left without jumps would keep the rules from matching across them
+            changed |= removeUnusedLabels(code);
+        }
+        return code;
+    }
+
+    private boolean removeStoreLoads(List<JasminInstruction> code) {
+        Map<Integer, Integer> reads = new HashMap<>();
+        for (JasminInstruction instruction : code) {
+            if (instruction.isLoad() || (!instruction.isLabel() && instruction.getOpcode().equals("iinc"))) {
+                reads.merge(instruction.getRegister(), 1, Integer::sum);
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0; i + 1 < code.size(); i++) {
+            JasminInstruction store = code.get(i);
+            JasminInstruction load = code.get(i + 1);
+            if (!store.isStore() || !load.isLoad() || store.getRegister() != load.getRegister()) continue;
+            if (store.getOpcode().charAt(0) != load.getOpcode().charAt(0)) continue;
+            if (reads.get(load.getRegister()) != 1) continue;
+
+            code.subList(i, i + 2).clear();
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean compareWithZero(List<JasminInstruction> code) {
+        boolean changed = false;
+        for (int i = 0; i + 1 < code.size(); i++) {
+            if (!isZero(code.get(i))) continue;
+
+            JasminInstruction next = code.get(i + 1);
+            if (isIntCompare(next)) {
+                // a < 0
+                code.set(i + 1, JasminInstruction.instruction("if" + next.getOpcode().substring(7),
+                        next.getArgument()));
+                code.remove(i);
+                changed = true;
+            }
+            else if (i + 2 < code.size() && pushesInt(next) && isIntCompare(code.get(i + 2))) {
+                // 0 < a, which is a > 0
+                JasminInstruction compare = code.get(i + 2);
+                code.set(i + 2, JasminInstruction.instruction("if" + swap(compare.getOpcode().substring(7)),
+                        compare.getArgument()));
+                code.remove(i);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // ifXX TRUE; iconst_0; goto NEXT; TRUE:; iconst_1; NEXT:; ifne/ifeq target
+    private boolean branchOnBooleans(List<JasminInstruction> code) {
+        Map<String, Integer> jumps = countJumps(code);
+
+        boolean changed = false;
+        for (int i = 0; i + 6 < code.size(); i++) {
+            JasminInstruction compare = code.get(i);
+            JasminInstruction trueLabel = code.get(i + 3);
+            JasminInstruction nextLabel = code.get(i + 5);
+            JasminInstruction test = code.get(i + 6);
+
+            if (!compare.isJump() || compare.isGoto() || !isZero(code.get(i + 1))) continue;
+            if (!code.get(i + 2).isGoto() || !isOne(code.get(i + 4))) continue;
+            if (!trueLabel.isLabel() || !trueLabel.getLabel().equals(compare.getArgument())) continue;
+            if (!nextLabel.isLabel() || !nextLabel.getLabel().equals(code.get(i + 2).getArgument())) continue;
+            if (jumps.get(trueLabel.getLabel()) != 1 || jumps.get(nextLabel.getLabel()) != 1) continue;
+            if (test.isLabel() || !test.getOpcode().equals("ifne") && !test.getOpcode().equals("ifeq")) continue;
+
+            String opcode = test.getOpcode().equals("ifne") ? compare.getOpcode() : negate(compare.getOpcode());
+            code.subList(i, i + 7).clear();
+            code.add(i, JasminInstruction.instruction(opcode, test.getArgument()));
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean threadBranches(List<JasminInstruction> code) {
+        Map<String, Integer> labels = indexLabels(code);
+
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            JasminInstruction jump = code.get(i);
+            if (!jump.isJump()) continue;
+
+            String target = getFinalTarget(jump.getArgument(), code, labels);
+            if (!target.equals(jump.getArgument())) {
+                code.set(i, JasminInstruction.instruction(jump.getOpcode(), target));
+                changed = true;
+                continue;
+            }
+
+            // ifXX L; goto M; L: is if!XX M; L:
+            if (!jump.isGoto() && i + 2 < code.size() && code.get(i + 1).isGoto()
+                    && code.get(i + 2).isLabel() && code.get(i + 2).getLabel().equals(jump.getArgument())) {
+                code.set(i, JasminInstruction.instruction(negate(jump.getOpcode()), code.get(i + 1).getArgument()));
+                code.remove(i + 1);
+                labels = indexLabels(code);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Label reached by following the gotos found at a label, the label itself if there are none or they loop
+    private String getFinalTarget(String label, List<JasminInstruction> code, Map<String, Integer> labels) {
+        Set<String> visited = new HashSet<>();
+        String target = label;
+        while (visited.add(target)) {
+            Integer index = labels.get(target);
+            if (index == null) return target;
+            while (index < code.size() && code.get(index).isLabel()) index++;
+            if (index == code.size() || !code.get(index).isGoto()) return target;
+            target = code.get(index).getArgument();
+        }
+        return label;
+    }
+
+    private boolean removeRedundantGotos(List<JasminInstruction> code) {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            JasminInstruction instruction = code.get(i);
+
+            if (instruction.isGoto() && jumpsToNext(code, i)) {
+                code.remove(i--);
+                changed = true;
+            }
+            else if (instruction.endsBlock()) {
+                while (i + 1 < code.size() && !code.get(i + 1).isLabel()) {
+                    code.remove(i + 1);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Whether the jump at index targets one of the labels right after it
+    private static boolean jumpsToNext(List<JasminInstruction> code, int index) {
+        for (int i = index + 1; i < code.size() && code.get(i).isLabel(); i++) {
+            if (code.get(i).getLabel().equals(code.get(index).getArgument())) return true;
+        }
+        return false;
+    }
+
+    private boolean removeUnusedLabels(List<JasminInstruction> code) {
+        Map<String, Integer> jumps = countJumps(code);
+        return code.removeIf(instruction -> instruction.isLabel() && !jumps.containsKey(instruction.getLabel()));
+    }
+
+    private static Map<String, Integer> countJumps(List<JasminInstruction> code) {
+        Map<String, Integer> jumps = new HashMap<>();
+        for (JasminInstruction instruction : code) {
+            if (instruction.isJump()) jumps.merge(instruction.getArgument(), 1, Integer::sum);
+        }
+        return jumps;
+    }
+
+    private static Map<String, Integer> indexLabels(List<JasminInstruction> code) {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).isLabel()) labels.put(code.get(i).getLabel(), i);
+        }
+        return labels;
+    }
+
+    private static boolean isZero(JasminInstruction instruction) {
+        return !instruction.isLabel() && instruction.getOpcode().equals("iconst_0");
+    }
+
+    private static boolean isOne(JasminInstruction instruction) {
+        return !instruction.isLabel() && instruction.getOpcode().equals("iconst_1");
+    }
+
+    private static boolean isIntCompare(JasminInstruction instruction) {
+        return !instruction.isLabel() && instruction.getOpcode().startsWith("if_icmp");
+    }
+
+    // Instructions that only push an int
+    private static boolean pushesInt(JasminInstruction instruction) {
+        if (instruction.isLabel()) return false;
+        String opcode = instruction.getOpcode();
+        return opcode.startsWith("iload") || opcode.startsWith("iconst") || opcode.equals("bipush")
+                || opcode.equals("sipush") || opcode.equals("ldc");
+    }
+
+    // Condition that holds when the operands of a comparison are swapped
+    private static String swap(String condition) {
+        return switch (condition) {
+            case "lt" -> "gt";
+            case "gt" -> "lt";
+            case "le" -> "ge";
+            case "ge" -> "le";
+            default -> condition;
+        };
+    }
+
+    // Branch taken exactly when the given one is not
+    private static String negate(String opcode) {
+        String prefix = opcode.substring(0, opcode.length() - 2);
+        String condition = switch (opcode.substring(opcode.length() - 2)) {
+            case "eq" -> "ne";
+            case "ne" -> "eq";
+            case "lt" -> "ge";
+            case "ge" -> "lt";
+            case "gt" -> "le";
+            case "le" -> "gt";
+            default -> throw new IllegalArgumentException("Not a conditional branch: " + opcode);
+        };
+        return prefix + condition;
+    }
+}
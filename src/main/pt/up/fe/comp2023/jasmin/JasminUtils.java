@@ -2,8 +2,6 @@ package pt.up.fe.comp2023.jasmin;
 
 import org.specs.comp.ollir.*;
 
-import static pt.up.fe.comp2023.jasmin.JasminBuilder.classUnit;
-
 public class JasminUtils {
     public static String getJasminType(Type type) {
         StringBuilder stringBuilder = new StringBuilder();
@@ -37,6 +35,15 @@ public class JasminUtils {
         return stringBuilder.toString();
     }
 
+    // Exponent of the power of two held by an integer literal, -1 for any other element
+    public static int getPowerOfTwo(Element element) {
+        if (!(element instanceof LiteralElement literal) || element.getType().getTypeOfElement() != ElementType.INT32) {
+            return -1;
+        }
+        int value = Integer.parseInt(literal.getLiteral());
+        return value > 0 && Integer.bitCount(value) == 1 ? Integer.numberOfTrailingZeros(value) : -1;
+    }
+
     public static String getImpClass(String className, ClassUnit classUnit) {
         if (className.equals("this")) return classUnit.getClassName();
         for (String imp : classUnit.getImports()) {
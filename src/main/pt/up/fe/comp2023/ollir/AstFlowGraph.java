@@ -0,0 +1,111 @@
+package pt.up.fe.comp2023.ollir;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Control-flow graph of a method body, built directly over the AST. Each node is a simple statement, the
+ * condition of an if or while, or the return expression. Conditions have two successors, taken when the condition
+ * is true and false, and the other nodes have one. A null successor is the end of the method.
+ */
+public class AstFlowGraph {
+
+    public static class Node {
+        private final JmmNode jmmNode;
+        private final boolean condition;
+        private final List<Node> successors;
+
+        private Node(JmmNode jmmNode, boolean condition) {
+            this.jmmNode = jmmNode;
+            this.condition = condition;
+            this.successors = new ArrayList<>();
+        }
+
+        public JmmNode getJmmNode() {
+            return jmmNode;
+        }
+
+        public boolean isCondition() {
+            return condition;
+        }
+
+        public List<Node> getSuccessors() {
+            return successors;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final Node entry;
+
+    public AstFlowGraph(JmmNode method) {
+        this.nodes = new ArrayList<>();
+
+        Node next = null;
+        List<JmmNode> children = method.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            JmmNode child = children.get(i);
+            switch (child.getKind()) {
+                case "Type", "Parameter", "VarDeclaration" -> {}
+                case "Stmt", "IfElseStmt", "IfStmt", "WhileStmt", "ExprStmt", "AssignmentStmt", "ArrayAssignmentStmt" ->
+                        next = build(child, next);
+                // return expression
+                default -> next = addNode(child, false, next);
+            }
+        }
+        this.entry = next;
+    }
+
+    public Node getEntry() {
+        return entry;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    // Adds the nodes of a statement, given the node that runs after it, and returns the first one
+    private Node build(JmmNode statement, Node next) {
+        switch (statement.getKind()) {
+            case "Stmt" -> {
+                List<JmmNode> children = statement.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    next = build(children.get(i), next);
+                }
+                return next;
+            }
+            case "IfElseStmt" -> {
+                Node thenEntry = build(statement.getJmmChild(1), next);
+                Node elseEntry = build(statement.getJmmChild(2), next);
+                return addCondition(statement.getJmmChild(0), thenEntry, elseEntry);
+            }
+            case "IfStmt" -> {
+                Node thenEntry = build(statement.getJmmChild(1), next);
+                return addCondition(statement.getJmmChild(0), thenEntry, next);
+            }
+            case "WhileStmt" -> {
+                // the body loops back to the condition
+                Node condition = addCondition(statement.getJmmChild(0), null, next);
+                condition.successors.set(0, build(statement.getJmmChild(1), condition));
+                return condition;
+            }
+            default -> {
+                return addNode(statement, false, next);
+            }
+        }
+    }
+
+    private Node addCondition(JmmNode expression, Node whenTrue, Node whenFalse) {
+        Node node = addNode(expression, true, whenTrue);
+        node.successors.add(whenFalse);
+        return node;
+    }
+
+    private Node addNode(JmmNode jmmNode, boolean condition, Node next) {
+        Node node = new Node(jmmNode, condition);
+        node.successors.add(next);
+        nodes.add(node);
+        return node;
+    }
+}
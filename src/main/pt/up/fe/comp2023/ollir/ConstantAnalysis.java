@@ -0,0 +1,132 @@
+package pt.up.fe.comp2023.ollir;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.*;
+
+import static pt.up.fe.comp2023.ollir.ConstantFoldVisitor.*;
+
+/**
+ * Forward constant propagation over an {@link AstFlowGraph}, solved with a worklist. The state before a node maps
+ * each variable known to hold a constant to that constant, and is the meet of the states that reach it: a variable
+ * stays constant only if every incoming path agrees on its value. When a condition is constant only the branch it
+ * takes is followed, so constants are not lost to branches that never run.
+ */
+public class ConstantAnalysis {
+
+    private final AstFlowGraph graph;
+    private final Set<String> variables;
+    private final Map<AstFlowGraph.Node, Map<String, JmmNode>> in;
+
+    public ConstantAnalysis(AstFlowGraph graph, Set<String> variables) {
+        this.graph = graph;
+        this.variables = variables;
+        this.in = new HashMap<>();
+    }
+
+    public void analyse() {
+        AstFlowGraph.Node entry = graph.getEntry();
+        if (entry == null) return;
+
+        // nothing is known on entry: parameters come from the caller and locals are not initialized
+        Deque<AstFlowGraph.Node> worklist = new ArrayDeque<>();
+        Set<AstFlowGraph.Node> queued = new HashSet<>();
+        in.put(entry, new HashMap<>());
+        worklist.add(entry);
+        queued.add(entry);
+
+        while (!worklist.isEmpty()) {
+            AstFlowGraph.Node node = worklist.poll();
+            queued.remove(node);
+
+            Map<String, JmmNode> state = in.get(node);
+            Map<String, JmmNode> out = transfer(node, state);
+
+            for (AstFlowGraph.Node successor : getTakenSuccessors(node, state)) {
+                if (successor != null && merge(successor, out) && queued.add(successor)) {
+                    worklist.add(successor);
+                }
+            }
+        }
+    }
+
+    // Constants known before the node, or null if the node is never reached
+    public Map<String, JmmNode> getIn(AstFlowGraph.Node node) {
+        return in.get(node);
+    }
+
+    private Map<String, JmmNode> transfer(AstFlowGraph.Node node, Map<String, JmmNode> state) {
+        JmmNode jmmNode = node.getJmmNode();
+        if (node.isCondition() || !jmmNode.getKind().equals("AssignmentStmt")
+                || !variables.contains(jmmNode.get("name"))) {
+            return state;
+        }
+
+        Map<String, JmmNode> out = new HashMap<>(state);
+        JmmNode value = evaluate(jmmNode.getJmmChild(0), state);
+        if (value != null) {
+            out.put(jmmNode.get("name"), value);
+        } else {
+            out.remove(jmmNode.get("name"));
+        }
+        return out;
+    }
+
+    private List<AstFlowGraph.Node> getTakenSuccessors(AstFlowGraph.Node node, Map<String, JmmNode> state) {
+        List<AstFlowGraph.Node> successors = node.getSuccessors();
+        if (!node.isCondition()) return successors;
+
+        JmmNode value = evaluate(node.getJmmNode(), state);
+        if (value == null) return successors;
+
+        return Collections.singletonList(successors.get(value.get("value").equals("true") ? 0 : 1));
+    }
+
+    // Meets the state reaching a node with the one it already had, returning whether it changed
+    private boolean merge(AstFlowGraph.Node node, Map<String, JmmNode> state) {
+        Map<String, JmmNode> current = in.get(node);
+        if (current == null) {
+            in.put(node, new HashMap<>(state));
+            return true;
+        }
+
+        return current.entrySet().removeIf(entry -> !sameConstant(entry.getValue(), state.get(entry.getKey())));
+    }
+
+    // Literal the expression always evaluates to in the given state, or null if it is not constant
+    public static JmmNode evaluate(JmmNode expression, Map<String, JmmNode> state) {
+        switch (expression.getKind()) {
+            case "Integer", "Boolean" -> {
+                return expression;
+            }
+            case "Identifier" -> {
+                return state.get(expression.get("value"));
+            }
+            case "Brackets" -> {
+                return evaluate(expression.getJmmChild(0), state);
+            }
+            case "Denial" -> {
+                JmmNode operand = evaluate(expression.getJmmChild(0), state);
+                return operand == null ? null : foldNot(operand);
+            }
+            case "BinaryOp", "BoolOp" -> {
+                JmmNode left = evaluate(expression.getJmmChild(0), state);
+                JmmNode right = evaluate(expression.getJmmChild(1), state);
+                if (left != null && right != null) return fold(expression.get("op"), left, right);
+
+                // x * 0 and false && x are constant whatever x is
+                JmmNode simplified = simplify(expression.get("op"), left == null ? expression.getJmmChild(0) : left,
+                        right == null ? expression.getJmmChild(1) : right);
+                return simplified != null && isLiteral(simplified) ? simplified : null;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static boolean sameConstant(JmmNode first, JmmNode second) {
+        return second != null && first.getKind().equals(second.getKind())
+                && first.get("value").equals(second.get("value"));
+    }
+}
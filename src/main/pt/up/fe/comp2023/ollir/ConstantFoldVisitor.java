@@ -4,7 +4,7 @@ import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 
-import java.util.HashMap;
+import java.util.List;
 
 public class ConstantFoldVisitor extends AJmmVisitor<Void, Void> {
 
@@ -13,70 +13,152 @@ public class ConstantFoldVisitor extends AJmmVisitor<Void, Void> {
     protected void buildVisitor() {
         changed = false;
         addVisit("BinaryOp", this::visitBinaryOp);
-        addVisit("BoolOp", this::visitBoolOp);
+        addVisit("BoolOp", this::visitBinaryOp);
         addVisit("Denial", this::visitDenial);
+        addVisit("Brackets", this::visitBrackets);
         setDefaultVisit(this::defaultVisit);
     }
 
-    private Void visitDenial(JmmNode jmmNode, Void v) {
+    private Void visitBrackets(JmmNode jmmNode, Void v) {
         visit(jmmNode.getJmmChild(0), null);
-        if(jmmNode.getJmmChild(0).getKind().equals("Boolean")){
-            JmmNode newNode = new JmmNodeImpl("Boolean");
-            boolean value = jmmNode.get("value").equals("false");
-            newNode.put("value", Boolean.toString(value));
-            changeNode(jmmNode, newNode);
+        JmmNode child = jmmNode.getJmmChild(0);
+        if(isLiteral(child)){
+            changeNode(jmmNode, literal(child.getKind(), child.get("value")));
         }
         return null;
     }
 
-    private Void visitBoolOp(JmmNode jmmNode, Void v) {
-        visitAllChildren(jmmNode, null);
-        boolean value;
-        if(jmmNode.getJmmChild(0).getKind().equals("Boolean")
-                && jmmNode.getJmmChild(1).getKind().equals("Boolean")) {
-            value = jmmNode.getJmmChild(0).get("value").equals("true")
-                    && jmmNode.getJmmChild(1).get("value").equals("true");
-        } else if (jmmNode.getJmmChild(0).getKind().equals("Integer")
-                && jmmNode.getJmmChild(1).getKind().equals("Integer")){
-            int leftInt = Integer.parseInt(jmmNode.getJmmChild(0).get("value"));
-            int rightInt = Integer.parseInt(jmmNode.getJmmChild(1).get("value"));
-            value = leftInt < rightInt;
-        } else
-            return null;
-        JmmNode newNode = new JmmNodeImpl("Boolean");
-        newNode.put("value", Boolean.toString(value));
-        changeNode(jmmNode, newNode);
+    private Void visitDenial(JmmNode jmmNode, Void v) {
+        visit(jmmNode.getJmmChild(0), null);
+        JmmNode newNode = foldNot(jmmNode.getJmmChild(0));
+        if(newNode != null){
+            changeNode(jmmNode, newNode);
+        }
         return null;
     }
 
     private Void visitBinaryOp(JmmNode jmmNode, Void v) {
         visitAllChildren(jmmNode, null);
-        if(!jmmNode.getJmmChild(0).getKind().equals("Integer")
-                || !jmmNode.getJmmChild(1).getKind().equals("Integer"))
-            return null;
-        int value;
-        int leftInt = Integer.parseInt(jmmNode.getJmmChild(0).get("value"));
-        int rightInt = Integer.parseInt(jmmNode.getJmmChild(1).get("value"));
-
-        switch (jmmNode.get("op")) {
-            case "+" -> value = leftInt + rightInt;
-            case "-" -> value = leftInt - rightInt;
-            case "*" -> value = leftInt * rightInt;
-            case "/" -> value = leftInt / rightInt;
-            default -> value = 0;
+        JmmNode newNode = fold(jmmNode.get("op"), jmmNode.getJmmChild(0), jmmNode.getJmmChild(1));
+        if(newNode == null){
+            newNode = simplify(jmmNode.get("op"), jmmNode.getJmmChild(0), jmmNode.getJmmChild(1));
+        }
+        if(newNode != null){
+            changeNode(jmmNode, newNode);
         }
-        JmmNode newNode = new JmmNodeImpl("Integer");
-        newNode.put("value", Integer.toString(value));
-        changeNode(jmmNode, newNode);
         return null;
     }
 
-
     private Void defaultVisit(JmmNode jmmNode, Void v) {
         visitAllChildren(jmmNode, null);
         return null;
     }
 
+    // Literal resulting from applying op to two literals, or null when it can not be computed at compile time
+    public static JmmNode fold(String op, JmmNode left, JmmNode right) {
+        if(left.getKind().equals("Integer") && right.getKind().equals("Integer")) {
+            int leftInt = Integer.parseInt(left.get("value"));
+            int rightInt = Integer.parseInt(right.get("value"));
+
+            return switch (op) {
+                case "+" -> literal("Integer", Integer.toString(leftInt + rightInt));
+                case "-" -> literal("Integer", Integer.toString(leftInt - rightInt));
+                case "*" -> literal("Integer", Integer.toString(leftInt * rightInt));
+                // division by zero is left for the program to raise
+                case "/" -> rightInt == 0 ? null : literal("Integer", Integer.toString(leftInt / rightInt));
+                case "<" -> literal("Boolean", Boolean.toString(leftInt < rightInt));
+                default -> null;
+            };
+        }
+
+        if(left.getKind().equals("Boolean") && right.getKind().equals("Boolean") && op.equals("&&")) {
+            boolean value = left.get("value").equals("true") && right.get("value").equals("true");
+            return literal("Boolean", Boolean.toString(value));
+        }
+
+        return null;
+    }
+
+    // Operand or literal equal to applying op when at most one side is a literal, or null when there is none.
+    // An operand is only dropped when evaluating it has no effects and cannot throw
+    public static JmmNode simplify(String op, JmmNode left, JmmNode right) {
+        return switch (op) {
+            case "+" -> isInteger(left, 0) ? right : isInteger(right, 0) ? left : null;
+            case "-" -> {
+                if(isInteger(right, 0)) yield left;
+                yield isPure(left) && sameExpression(left, right) ? literal("Integer", "0") : null;
+            }
+            case "*" -> {
+                if(isInteger(left, 1)) yield right;
+                if(isInteger(right, 1)) yield left;
+                if(isInteger(left, 0) && isPure(right) || isInteger(right, 0) && isPure(left)) {
+                    yield literal("Integer", "0");
+                }
+                yield null;
+            }
+            case "/" -> isInteger(right, 1) ? left : null;
+            case "&&" -> {
+                if(isBoolean(left, true)) yield right;
+                if(isBoolean(right, true)) yield left;
+                // the right side is not evaluated after false
+                if(isBoolean(left, false) || isBoolean(right, false) && isPure(left)) {
+                    yield literal("Boolean", "false");
+                }
+                yield null;
+            }
+            default -> null;
+        };
+    }
+
+    private static boolean isInteger(JmmNode jmmNode, int value) {
+        return jmmNode.getKind().equals("Integer") && Integer.parseInt(jmmNode.get("value")) == value;
+    }
+
+    private static boolean isBoolean(JmmNode jmmNode, boolean value) {
+        return jmmNode.getKind().equals("Boolean") && jmmNode.get("value").equals(Boolean.toString(value));
+    }
+
+    // Whether evaluating the expression can neither throw nor change any state: no calls, allocations, array accesses
+    // or divisions. Dead code removal relies on it too
+    public static boolean isPure(JmmNode jmmNode) {
+        return switch (jmmNode.getKind()) {
+            case "Integer", "Boolean", "Identifier", "This" -> true;
+            case "Brackets", "Denial" -> isPure(jmmNode.getJmmChild(0));
+            case "BinaryOp", "BoolOp" -> !jmmNode.get("op").equals("/")
+                    && isPure(jmmNode.getJmmChild(0)) && isPure(jmmNode.getJmmChild(1));
+            default -> false;
+        };
+    }
+
+    private static boolean sameExpression(JmmNode first, JmmNode second) {
+        if(!first.getKind().equals(second.getKind())) return false;
+        if(first.getChildren().size() != second.getChildren().size()) return false;
+        for(String attribute : List.of("value", "op")) {
+            boolean hasAttribute = first.getAttributes().contains(attribute);
+            if(hasAttribute != second.getAttributes().contains(attribute)) return false;
+            if(hasAttribute && !first.get(attribute).equals(second.get(attribute))) return false;
+        }
+        for(int i = 0; i < first.getChildren().size(); i++) {
+            if(!sameExpression(first.getJmmChild(i), second.getJmmChild(i))) return false;
+        }
+        return true;
+    }
+
+    public static JmmNode foldNot(JmmNode operand) {
+        if(!operand.getKind().equals("Boolean")) return null;
+        return literal("Boolean", Boolean.toString(operand.get("value").equals("false")));
+    }
+
+    public static boolean isLiteral(JmmNode jmmNode) {
+        return jmmNode.getKind().equals("Integer") || jmmNode.getKind().equals("Boolean");
+    }
+
+    public static JmmNode literal(String kind, String value) {
+        JmmNode newNode = new JmmNodeImpl(kind);
+        newNode.put("value", value);
+        return newNode;
+    }
+
     private void changeNode(JmmNode oldNode, JmmNode newNode){
         if(oldNode.getJmmParent() == null) return;
         oldNode.getJmmParent().setChild(newNode,oldNode.getJmmParent().getChildren().indexOf(oldNode));
@@ -86,4 +168,4 @@ public class ConstantFoldVisitor extends AJmmVisitor<Void, Void> {
     public boolean changed() {
         return changed;
     }
-}
\ No newline at end of file
+}
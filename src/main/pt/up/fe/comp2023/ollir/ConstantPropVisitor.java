@@ -1,91 +1,89 @@
 package pt.up.fe.comp2023.ollir;
 
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.analysis.table.Symbol;
-import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
-import pt.up.fe.comp2023.semanticAnalysis.Method;
-import pt.up.fe.comp2023.semanticAnalysis.SymbolTableImpl;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.function.BiFunction;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
-public class ConstantPropVisitor extends AJmmVisitor<HashMap<String, JmmNode>, Void> {
+import static pt.up.fe.comp2023.ollir.ConstantFoldVisitor.literal;
 
+/**
+ * Propagates and folds constants in each method. A {@link ConstantAnalysis} over the method's
+ * {@link AstFlowGraph} finds the constants known before every statement, and each expression is then folded right
+ * after its constant variables are replaced.
+ */
+public class ConstantPropVisitor extends AJmmVisitor<Map<String, JmmNode>, Void> {
+
+    private final ConstantFoldVisitor folder = new ConstantFoldVisitor();
     private boolean changed;
+
     @Override
     protected void buildVisitor() {
         changed = false;
         addVisit("Method", this::visitMethod);
         addVisit("MainMethod", this::visitMethod);
-        addVisit("AssignmentStmt", this::visitAssign);
-        addVisit("Identifier", this::visitIdentifier);
-        addVisit("WhileStmt", this::visitWhile);
-        addVisit("IfElseStmt", this::visitIfElse);
         setDefaultVisit(this::defaultVisit);
     }
 
-    private Void visitIfElse(JmmNode jmmNode, HashMap<String, JmmNode> constants) {
-        visit(jmmNode.getJmmChild(0),constants);
-        visit(jmmNode.getJmmChild(1),constants);
-
-        for(JmmNode child : jmmNode.getJmmChild(1).getChildren()){
-            if(child.getKind().equals("Assignment")){
-                constants.remove(child.get("name"));
+    private Void visitMethod(JmmNode jmmNode, Map<String, JmmNode> constants) {
+        // only locals and parameters are tracked, fields may be changed by any call
+        Set<String> locals = new HashSet<>();
+        for (JmmNode child : jmmNode.getChildren()) {
+            if (child.getKind().equals("VarDeclaration") || child.getKind().equals("Parameter")) {
+                locals.add(child.get("value"));
             }
         }
-        visit(jmmNode.getJmmChild(2),constants);
 
-        for(JmmNode child : jmmNode.getJmmChild(2).getChildren()){
-            if(child.getKind().equals("Assignment")){
-                constants.remove(child.get("name"));
+        AstFlowGraph graph = new AstFlowGraph(jmmNode);
+        ConstantAnalysis analysis = new ConstantAnalysis(graph, locals);
+        analysis.analyse();
+
+        for (AstFlowGraph.Node node : graph.getNodes()) {
+            Map<String, JmmNode> in = analysis.getIn(node);
+            if (in == null) continue;
+
+            JmmNode statement = node.getJmmNode();
+            if (node.isCondition() || !statement.getKind().endsWith("Stmt")) {
+                visitExpression(statement, in);
+            } else {
+                // assignments, array assignments and expression statements only have expressions as children
+                for (JmmNode child : statement.getChildren()) {
+                    visitExpression(child, in);
+                }
             }
         }
         return null;
     }
 
-    private Void visitWhile(JmmNode jmmNode, HashMap<String, JmmNode> constants) {
-        visit(jmmNode.getJmmChild(1),constants);
-        for(JmmNode child: jmmNode.getJmmChild(1).getChildren())
-            if(child.getKind().equals("AssignmentStmt"))
-                constants.remove(child.get("name"));
-        visit(jmmNode.getJmmChild(0),constants);
-        return null;
-    }
-
-    private Void visitIdentifier(JmmNode jmmNode, HashMap<String, JmmNode> constants) {
-        if (constants.get(jmmNode.get("value")) != null) {
-            JmmNode newNode = new JmmNodeImpl(constants.get(jmmNode.get("value")).getKind());
-            newNode.put("value", constants.get(jmmNode.get("value")).get("value"));
-            changeNode(jmmNode, newNode);
-        }
+    private Void defaultVisit(JmmNode jmmNode, Map<String, JmmNode> constants) {
+        visitAllChildren(jmmNode, constants);
         return null;
     }
 
-    private Void visitAssign(JmmNode jmmNode, HashMap<String, JmmNode> constants) {
-        visit(jmmNode.getJmmChild(0), constants);
+    // Replaces the constant variables of an expression and folds it
+    private void visitExpression(JmmNode expression, Map<String, JmmNode> constants) {
+        JmmNode parent = expression.getJmmParent();
+        int index = parent.getChildren().indexOf(expression);
 
-        if(jmmNode.getJmmChild(0).getKind().equals("Integer")
-                || jmmNode.getJmmChild(0).getKind().equals("Boolean")){
-            constants.put(jmmNode.get("name"), jmmNode.getJmmChild(0));
-        } else
-            constants.remove(jmmNode.get("name"));
-        return null;
+        replaceVariables(expression, constants);
+        folder.visit(parent.getJmmChild(index), null);
+        if (folder.changed()) changed = true;
     }
 
-    private Void defaultVisit(JmmNode jmmNode, HashMap<String, JmmNode> constants) {
-        visitAllChildren(jmmNode, constants);
-        return null;
-    }
+    private void replaceVariables(JmmNode expression, Map<String, JmmNode> constants) {
+        if (expression.getKind().equals("Identifier")) {
+            JmmNode constant = constants.get(expression.get("value"));
+            if (constant != null) {
+                changeNode(expression, literal(constant.getKind(), constant.get("value")));
+            }
+            return;
+        }
 
-    private Void visitMethod(JmmNode jmmNode, HashMap<String, JmmNode> constants) {
-        constants = new HashMap<>();
-        visitAllChildren(jmmNode, constants);
-        return null;
+        for (JmmNode child : expression.getChildren()) {
+            replaceVariables(child, constants);
+        }
     }
 
     private void changeNode(JmmNode oldNode, JmmNode newNode){
@@ -97,4 +95,4 @@ public class ConstantPropVisitor extends AJmmVisitor<HashMap<String, JmmNode>, V
     public boolean changed() {
         return changed;
     }
-}
\ No newline at end of file
+}
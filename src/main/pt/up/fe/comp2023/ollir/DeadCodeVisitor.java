@@ -0,0 +1,179 @@
+package pt.up.fe.comp2023.ollir;
+
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.util.*;
+
+import static pt.up.fe.comp2023.ollir.ConstantFoldVisitor.isPure;
+
+/**
+ * Removes dead code from each method after constant propagation. Ifs and whiles with a constant condition are
+ * replaced by the branch that runs, and assignments to locals that are never read again are removed when their value
+ * has no side effects, along with the ifs left with empty branches, until nothing else can be removed.
+ */
+public class DeadCodeVisitor extends AJmmVisitor<Void, Void> {
+
+    private boolean changed;
+
+    @Override
+    protected void buildVisitor() {
+        changed = false;
+        addVisit("Method", this::visitMethod);
+        addVisit("MainMethod", this::visitMethod);
+        addVisit("IfElseStmt", this::visitIfElseStmt);
+        addVisit("IfStmt", this::visitIfStmt);
+        addVisit("WhileStmt", this::visitWhileStmt);
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private Void visitMethod(JmmNode jmmNode, Void v) {
+        Set<String> locals = new HashSet<>();
+        for (JmmNode child : jmmNode.getChildren()) {
+            if (child.getKind().equals("VarDeclaration") || child.getKind().equals("Parameter")) {
+                locals.add(child.get("value"));
+            }
+        }
+
+        // removing a store may leave the stores feeding it dead, or an if with nothing left in its branches
+        do {
+            defaultVisit(jmmNode, v);
+        } while (removeDeadStores(jmmNode, locals));
+        return null;
+    }
+
+    private Void visitIfElseStmt(JmmNode jmmNode, Void v) {
+        defaultVisit(jmmNode, v);
+        JmmNode condition = jmmNode.getJmmChild(0);
+        if (condition.getKind().equals("Boolean")) {
+            replaceByChild(jmmNode, condition.get("value").equals("true") ? 1 : 2);
+        } else if (isEmpty(jmmNode.getJmmChild(1)) && isEmpty(jmmNode.getJmmChild(2)) && isPure(condition)) {
+            remove(jmmNode);
+        }
+        return null;
+    }
+
+    private Void visitIfStmt(JmmNode jmmNode, Void v) {
+        defaultVisit(jmmNode, v);
+        JmmNode condition = jmmNode.getJmmChild(0);
+        if (condition.getKind().equals("Boolean")) {
+            if (condition.get("value").equals("true")) replaceByChild(jmmNode, 1);
+            else remove(jmmNode);
+        } else if (isEmpty(jmmNode.getJmmChild(1)) && isPure(condition)) {
+            remove(jmmNode);
+        }
+        return null;
+    }
+
+    private Void visitWhileStmt(JmmNode jmmNode, Void v) {
+        defaultVisit(jmmNode, v);
+        JmmNode condition = jmmNode.getJmmChild(0);
+        if (condition.getKind().equals("Boolean") && condition.get("value").equals("false")) {
+            remove(jmmNode);
+        }
+        return null;
+    }
+
+    private Void defaultVisit(JmmNode jmmNode, Void v) {
+        // children may remove themselves while being visited
+        for (JmmNode child : new ArrayList<>(jmmNode.getChildren())) {
+            visit(child, v);
+        }
+        return null;
+    }
+
+    // Backward liveness over the method's flow graph, removing the pure assignments whose variable is not live after
+    private boolean removeDeadStores(JmmNode method, Set<String> locals) {
+        AstFlowGraph graph = new AstFlowGraph(method);
+        List<AstFlowGraph.Node> nodes = graph.getNodes();
+        Map<AstFlowGraph.Node, Set<String>> liveIn = new HashMap<>();
+        for (AstFlowGraph.Node node : nodes) {
+            liveIn.put(node, new HashSet<>());
+        }
+
+        boolean updated = true;
+        while (updated) {
+            updated = false;
+            // nodes are added in reverse program order, so this mostly visits successors first
+            for (AstFlowGraph.Node node : nodes) {
+                Set<String> in = liveOut(node, liveIn);
+                JmmNode statement = node.getJmmNode();
+                if (!node.isCondition() && statement.getKind().equals("AssignmentStmt")) {
+                    in.remove(statement.get("name"));
+                }
+                addUses(statement, in);
+                if (liveIn.get(node).addAll(in)) updated = true;
+            }
+        }
+
+        boolean removed = false;
+        for (AstFlowGraph.Node node : nodes) {
+            JmmNode statement = node.getJmmNode();
+            if (node.isCondition() || !isDeadStatement(statement, locals, liveOut(node, liveIn))) continue;
+            remove(statement);
+            removed = true;
+        }
+        return removed;
+    }
+
+    private boolean isDeadStatement(JmmNode statement, Set<String> locals, Set<String> liveOut) {
+        return switch (statement.getKind()) {
+            case "AssignmentStmt" -> locals.contains(statement.get("name")) && !liveOut.contains(statement.get("name"))
+                    && isPure(statement.getJmmChild(0));
+            case "ExprStmt" -> isPure(statement.getJmmChild(0));
+            default -> false;
+        };
+    }
+
+    private static Set<String> liveOut(AstFlowGraph.Node node, Map<AstFlowGraph.Node, Set<String>> liveIn) {
+        Set<String> out = new HashSet<>();
+        for (AstFlowGraph.Node successor : node.getSuccessors()) {
+            if (successor != null) out.addAll(liveIn.get(successor));
+        }
+        return out;
+    }
+
+    // Adds every variable read by the node, the assigned variable itself excluded
+    private static void addUses(JmmNode jmmNode, Set<String> uses) {
+        if (jmmNode.getKind().equals("Identifier")) {
+            uses.add(jmmNode.get("value"));
+        } else if (jmmNode.getKind().equals("ArrayAssignmentStmt")) {
+            uses.add(jmmNode.get("name"));
+        }
+
+        for (JmmNode child : jmmNode.getChildren()) {
+            addUses(child, uses);
+        }
+    }
+
+    private static boolean isEmpty(JmmNode statement) {
+        if (!statement.getKind().equals("Stmt")) return false;
+        for (JmmNode child : statement.getChildren()) {
+            if (!isEmpty(child)) return false;
+        }
+        return true;
+    }
+
+    private void replaceByChild(JmmNode statement, int index) {
+        JmmNode child = statement.getJmmChild(index);
+        statement.removeJmmChild(child);
+        statement.getJmmParent().setChild(child, statement.getIndexOfSelf());
+        changed = true;
+    }
+
+    private void remove(JmmNode statement) {
+        JmmNode parent = statement.getJmmParent();
+        // the branches and body of ifs and whiles must stay in place
+        if (parent.getKind().endsWith("Method") || parent.getKind().equals("Stmt")) {
+            statement.delete();
+        } else {
+            parent.setChild(new JmmNodeImpl("Stmt"), statement.getIndexOfSelf());
+        }
+        changed = true;
+    }
+
+    public boolean changed() {
+        return changed;
+    }
+}
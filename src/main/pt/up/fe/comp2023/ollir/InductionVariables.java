@@ -0,0 +1,195 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Replaces the products of a basic induction variable of a {@link Loop}, one that only changes by adding a constant,
+ * by a new variable that adds the scaled constant next to every change. The product is computed once before the
+ * loop, and a constant step lets both backends update the new variable with iinc.
+ */
+public class InductionVariables {
+
+    private final Method method;
+    private int nextVariable = 0;
+
+    public InductionVariables(Method method) {
+        this.method = method;
+    }
+
+    // Variable that changes by a constant step right after the instruction at update
+    private record Basic(String name, int update, int step) {
+    }
+
+    public boolean optimize() {
+        boolean optimized = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // the added instructions shift the loops that come after, so they are found again
+            for (Loop loop : Loop.find(method)) {
+                if (reduce(loop)) {
+                    optimized = changed = true;
+                    break;
+                }
+            }
+        }
+        return optimized;
+    }
+
+    private boolean reduce(Loop loop) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Integer> assignments = loop.countAssignments(instructions);
+
+        Map<String, Basic> basics = new HashMap<>();
+        for (int i = loop.header(); i <= loop.end(); i++) {
+            Basic basic = findBasic(loop, i, assignments);
+            if (basic != null) basics.put(basic.name(), basic);
+        }
+
+        for (int i = loop.header(); i <= loop.end(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) continue;
+            if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) continue;
+            if (!(assign.getRhs() instanceof BinaryOpInstruction binaryOp)) continue;
+            if (binaryOp.getOperation().getOpType() != OperationType.MUL) continue;
+
+            Basic basic = getBasic(binaryOp.getLeftOperand(), basics);
+            Element factor = binaryOp.getRightOperand();
+            if (basic == null) {
+                basic = getBasic(binaryOp.getRightOperand(), basics);
+                factor = binaryOp.getLeftOperand();
+            }
+            if (basic == null || !isInvariant(factor, assignments) || dest.getName().equals(basic.name())) continue;
+
+            strengthen(loop, i, basic, factor);
+            return true;
+        }
+        return false;
+    }
+
+    // The only assignment of a variable in the loop, as i := i + c, i := c + i or i := i - c, or through a temporary
+    // right before it, as t := i + c; i := t
+    private Basic findBasic(Loop loop, int index, Map<String, Integer> assignments) {
+        List<Instruction> instructions = method.getInstructions();
+        if (!(instructions.get(index) instanceof AssignInstruction assign)) return null;
+        if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) return null;
+        if (assignments.get(dest.getName()) != 1) return null;
+
+        Instruction rhs = assign.getRhs();
+        if (rhs instanceof SingleOpInstruction single && single.getSingleOperand() instanceof Operand temporary
+                && !(temporary instanceof ArrayOperand) && index > loop.header()
+                && !method.getLabels().containsValue(assign)
+                && instructions.get(index - 1) instanceof AssignInstruction previous
+                && previous.getDest() instanceof Operand previousDest
+                && previousDest.getName().equals(temporary.getName())) {
+            rhs = previous.getRhs();
+        }
+        if (!(rhs instanceof BinaryOpInstruction binaryOp)) return null;
+
+        OperationType operation = binaryOp.getOperation().getOpType();
+        Element left = binaryOp.getLeftOperand();
+        Element right = binaryOp.getRightOperand();
+        if (operation == OperationType.ADD && isVariable(right, dest.getName()) && left.isLiteral()) {
+            return new Basic(dest.getName(), index, getValue(left));
+        }
+        if (operation != OperationType.ADD && operation != OperationType.SUB) return null;
+        if (!isVariable(left, dest.getName()) || !right.isLiteral()) return null;
+        return new Basic(dest.getName(), index, operation == OperationType.ADD ? getValue(right) : -getValue(right));
+    }
+
+    private static Basic getBasic(Element element, Map<String, Basic> basics) {
+        if (!(element instanceof Operand operand) || operand instanceof ArrayOperand) return null;
+        return basics.get(operand.getName());
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private static boolean isInvariant(Element element, Map<String, Integer> assignments) {
+        if (element.isLiteral()) return true;
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && !assignments.containsKey(operand.getName());
+    }
+
+    private static int getValue(Element literal) {
+        return Integer.parseInt(((LiteralElement) literal).getLiteral());
+    }
+
+    // Turns the product at index into a copy of a new variable, which starts as the product before the loop and
+    // takes the scaled step wherever the basic variable takes its own
+    private void strengthen(Loop loop, int index, Basic basic, Element factor) {
+        List<Instruction> instructions = method.getInstructions();
+        Type type = new Type(ElementType.INT32);
+        Operand variable = newVariable(type);
+
+        List<Instruction> preheader = new ArrayList<>();
+        preheader.add(new AssignInstruction(copyOf(variable), type, new BinaryOpInstruction(
+                new Operand(basic.name(), type), new Operation(OperationType.MUL, type), copyOf(factor))));
+
+        Element step;
+        if (factor.isLiteral()) {
+            step = new LiteralElement(Integer.toString(basic.step() * getValue(factor)), type);
+        }
+        else if (Math.abs(basic.step()) == 1) {
+            step = copyOf(factor);
+        }
+        else {
+            step = newVariable(type);
+            preheader.add(new AssignInstruction(copyOf(step), type, new BinaryOpInstruction(copyOf(factor),
+                    new Operation(OperationType.MUL, type), new LiteralElement(Integer.toString(basic.step()), type))));
+        }
+        AssignInstruction product = (AssignInstruction) instructions.get(index);
+        AssignInstruction copy = new AssignInstruction(product.getDest(), product.getTypeOfAssign(),
+                new SingleOpInstruction(copyOf(variable)));
+        instructions.set(index, copy);
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (label.getValue() == product) label.setValue(copy);
+        }
+
+        // negative steps are subtracted, so that literal ones stay in the range of iinc
+        OperationType operation = OperationType.ADD;
+        if (step instanceof LiteralElement literal && getValue(literal) < 0) {
+            step = new LiteralElement(Integer.toString(-getValue(literal)), type);
+            operation = OperationType.SUB;
+        }
+        else if (!factor.isLiteral() && basic.step() == -1) {
+            operation = OperationType.SUB;
+        }
+        instructions.add(basic.update() + 1, new AssignInstruction(copyOf(variable), type, new BinaryOpInstruction(
+                copyOf(variable), new Operation(operation, type), step)));
+        if (basic.update() < index) index++;
+
+        loop.addToPreheader(method, preheader);
+        new LocalValueNumbering(method).removeCopy(index + preheader.size());
+    }
+
+    // Variable with a name not used in the method. A variable table built from parsed code would give it the
+    // register of the first variable after it, so it gets the next free register there
+    private Operand newVariable(Type type) {
+        Set<String> names = new HashSet<>(Loop.countAssignments(method).keySet());
+        names.addAll(method.getVarTable().keySet());
+
+        String name;
+        do {
+            name = "iv" + nextVariable++;
+        } while (names.contains(name));
+
+        if (!method.getVarTable().isEmpty()) {
+            int register = 0;
+            for (Descriptor descriptor : method.getVarTable().values()) {
+                register = Math.max(register, descriptor.getVirtualReg() + 1);
+            }
+            method.getVarTable().put(name, new Descriptor(VarScope.LOCAL, register, type));
+        }
+        return new Operand(name, type);
+    }
+
+    private static Element copyOf(Element element) {
+        if (element instanceof LiteralElement literal) return new LiteralElement(literal.getLiteral(), literal.getType());
+        Operand operand = (Operand) element;
+        return new Operand(operand.getName(), operand.getType());
+    }
+}
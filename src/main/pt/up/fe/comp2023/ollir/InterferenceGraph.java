@@ -0,0 +1,121 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.Instruction;
+
+import java.util.*;
+
+public class InterferenceGraph {
+
+    private final Map<String, Set<String>> edges;
+
+    public InterferenceGraph(Collection<String> variables) {
+        this.edges = new LinkedHashMap<>();
+        for (String variable : variables) {
+            edges.put(variable, new HashSet<>());
+        }
+    }
+
+    public static InterferenceGraph build(Collection<String> variables, List<Instruction> instructions,
+                                          LivenessAnalysis liveness) {
+        InterferenceGraph graph = new InterferenceGraph(variables);
+
+        for (Instruction instruction : instructions) {
+            for (String def : liveness.getDefs(instruction)) {
+                for (String live : liveness.getLiveOut(instruction)) {
+                    graph.addEdge(def, live);
+                }
+            }
+        }
+
+        // variables read before any assignment are all alive when the method starts
+        if (!instructions.isEmpty()) {
+            Set<String> entry = liveness.getLiveIn(instructions.get(0));
+            for (String first : entry) {
+                for (String second : entry) {
+                    graph.addEdge(first, second);
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    public void addEdge(String first, String second) {
+        if (first.equals(second) || !edges.containsKey(first) || !edges.containsKey(second)) return;
+
+        edges.get(first).add(second);
+        edges.get(second).add(first);
+    }
+
+    public Set<String> getNodes() {
+        return edges.keySet();
+    }
+
+    public Set<String> getNeighbours(String variable) {
+        return edges.get(variable);
+    }
+
+    /**
+     * Colors the graph with at most k colors using simplify/select with optimistic spilling.
+     * Returns null when the graph could not be colored with k colors.
+     */
+    public Map<String, Integer> color(int k) {
+        Deque<String> stack = new ArrayDeque<>();
+        Map<String, Integer> degrees = new HashMap<>();
+        Set<String> remaining = new LinkedHashSet<>(edges.keySet());
+
+        for (String node : remaining) {
+            degrees.put(node, edges.get(node).size());
+        }
+
+        while (!remaining.isEmpty()) {
+            String next = null;
+            for (String node : remaining) {
+                if (degrees.get(node) < k) {
+                    next = node;
+                    break;
+                }
+            }
+
+            // no trivially colorable node left, push the most constrained one and hope for the best
+            if (next == null) {
+                for (String node : remaining) {
+                    if (next == null || degrees.get(node) > degrees.get(next)) {
+                        next = node;
+                    }
+                }
+            }
+
+            remaining.remove(next);
+            stack.push(next);
+            for (String neighbour : edges.get(next)) {
+                if (remaining.contains(neighbour)) {
+                    degrees.put(neighbour, degrees.get(neighbour) - 1);
+                }
+            }
+        }
+
+        Map<String, Integer> colors = new HashMap<>();
+        while (!stack.isEmpty()) {
+            String node = stack.pop();
+
+            Set<Integer> used = new HashSet<>();
+            for (String neighbour : edges.get(node)) {
+                if (colors.containsKey(neighbour)) {
+                    used.add(colors.get(neighbour));
+                }
+            }
+
+            int color = 0;
+            while (used.contains(color)) {
+                color++;
+            }
+            if (color >= k) {
+                return null;
+            }
+            colors.put(node, color);
+        }
+
+        return colors;
+    }
+}
@@ -1,28 +1,89 @@
 package pt.up.fe.comp2023.ollir;
 
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OllirErrorException;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilerStats;
+import pt.up.fe.comp2023.semanticAnalysis.SymbolTableImpl;
 import pt.up.fe.comp2023.semanticAnalysis.TableVisitor;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.*;
 
 public class JmmOllirImpl implements JmmOptimization {
 
+    // The OLLIR code of the class unit the backends compile, so what is parsed back is the same code
     @Override
     public OllirResult toOllir(JmmSemanticsResult jmmSemanticsResult) {
+        String ollirCode = OllirPrinter.print(toClassUnit(jmmSemanticsResult));
 
-        OllirBuilder ollirBuilder = new OllirBuilder(jmmSemanticsResult.getSymbolTable());
-        ollirBuilder.visit(jmmSemanticsResult.getRootNode());
-        String ollirCode = ollirBuilder.getOllirCode();
+        return CompilerStats.measure("ollir parsing",
+                () -> new OllirResult(jmmSemanticsResult, ollirCode, Collections.emptyList()));
+    }
 
-        return new OllirResult(jmmSemanticsResult, ollirCode, Collections.emptyList());
+    public ClassUnit toClassUnit(JmmSemanticsResult jmmSemanticsResult) {
+        OllirClassBuilder classBuilder = new OllirClassBuilder((SymbolTableImpl) jmmSemanticsResult.getSymbolTable());
+        return CompilerStats.measure("ollir generation", () -> classBuilder.build(jmmSemanticsResult.getRootNode()));
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
-        return JmmOptimization.super.optimize(ollirResult);
+        ollirResult.getReports().addAll(optimize(ollirResult.getOllirClass(), ollirResult.getConfig()));
+        return ollirResult;
+    }
+
+    public List<Report> optimize(ClassUnit classUnit, Map<String, String> config) {
+        if (config.getOrDefault("optimize", "false").equals("true")) {
+            CompilerStats.measure("loop invariant code motion", () -> {
+                for (Method method : classUnit.getMethods()) {
+                    new LoopInvariantMotion(method).optimize();
+                }
+            });
+            CompilerStats.measure("common subexpression elimination", () -> {
+                for (Method method : classUnit.getMethods()) {
+                    new LocalValueNumbering(method).optimize();
+                }
+            });
+            CompilerStats.measure("induction variable strength reduction", () -> {
+                for (Method method : classUnit.getMethods()) {
+                    new InductionVariables(method).optimize();
+                }
+            });
+        }
+
+        int registers = Integer.parseInt(config.getOrDefault("registerAllocation", "-1"));
+        if (registers < 0)
+            return new ArrayList<>();
+
+        return CompilerStats.measure("register allocation", () -> allocateRegisters(classUnit, registers));
+    }
+
+    private List<Report> allocateRegisters(ClassUnit classUnit, int registers) {
+        List<Report> reports = new ArrayList<>();
+        try {
+            classUnit.checkMethodLabels();
+        } catch (OllirErrorException e) {
+            reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1, "Register allocation failed", e));
+            return reports;
+        }
+        CompilerStats.measure("cfg", () -> {
+            classUnit.buildCFGs();
+            classUnit.buildVarTables();
+        });
+
+        for (Method method : classUnit.getMethods()) {
+            RegisterAllocation allocation = new RegisterAllocation(method, registers);
+            if (!CompilerStats.measure(method.getMethodName(), allocation::allocate)) {
+                reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1,
+                        "Method " + method.getMethodName() + " needs at least " + allocation.getRequiredRegisters()
+                                + " registers, but only " + registers + " were given", null));
+            }
+        }
+        return reports;
     }
 
     @Override
@@ -30,19 +91,13 @@ public class JmmOllirImpl implements JmmOptimization {
         if (semanticsResult.getConfig().getOrDefault("optimize", "false").equals("false"))
             return semanticsResult;
 
-        //visit once
+        // propagation folds every expression it visits, one pass reaches the fixpoint
         ConstantPropVisitor cpVisitor = new ConstantPropVisitor();
-        ConstantFoldVisitor cfVisitor = new ConstantFoldVisitor();
-        cpVisitor.visit(semanticsResult.getRootNode(), new HashMap<>());
-        cfVisitor.visit(semanticsResult.getRootNode(), null);
-
-        //visit while changed
-        while (cpVisitor.changed() || cfVisitor.changed()){
-            cpVisitor = new ConstantPropVisitor();
-            cfVisitor = new ConstantFoldVisitor();
-            cpVisitor.visit(semanticsResult.getRootNode(), new HashMap<>());
-            cfVisitor.visit(semanticsResult.getRootNode(), null);
-        }
+        CompilerStats.measure("constant propagation", () -> cpVisitor.visit(semanticsResult.getRootNode(), new HashMap<>()));
+
+        DeadCodeVisitor dcVisitor = new DeadCodeVisitor();
+        CompilerStats.measure("dead code elimination", () -> dcVisitor.visit(semanticsResult.getRootNode(), null));
+
         return semanticsResult;
     }
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+public class LivenessAnalysis {
+
+    private final Method method;
+    private final Map<Instruction, Set<String>> uses;
+    private final Map<Instruction, Set<String>> defs;
+    private final Map<Instruction, Set<String>> liveIn;
+    private final Map<Instruction, Set<String>> liveOut;
+
+    public LivenessAnalysis(Method method) {
+        this.method = method;
+        this.uses = new HashMap<>();
+        this.defs = new HashMap<>();
+        this.liveIn = new HashMap<>();
+        this.liveOut = new HashMap<>();
+    }
+
+    public void analyse() {
+        List<Instruction> instructions = method.getInstructions();
+
+        for (Instruction instruction : instructions) {
+            Set<String> use = new HashSet<>();
+            Set<String> def = new HashSet<>();
+            addUses(instruction, use);
+            addDefs(instruction, def);
+
+            uses.put(instruction, use);
+            defs.put(instruction, def);
+            liveIn.put(instruction, new HashSet<>());
+            liveOut.put(instruction, new HashSet<>());
+        }
+
+        // backwards iteration until no live set changes
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = instructions.get(i);
+
+                Set<String> out = new HashSet<>();
+                for (Node successor : instruction.getSuccessors()) {
+                    if (successor instanceof Instruction successorInstruction) {
+                        out.addAll(liveIn.get(successorInstruction));
+                    }
+                }
+
+                Set<String> in = new HashSet<>(out);
+                in.removeAll(defs.get(instruction));
+                in.addAll(uses.get(instruction));
+
+                if (!in.equals(liveIn.get(instruction)) || !out.equals(liveOut.get(instruction))) {
+                    liveIn.put(instruction, in);
+                    liveOut.put(instruction, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public Set<String> getUses(Instruction instruction) {
+        return uses.get(instruction);
+    }
+
+    public Set<String> getDefs(Instruction instruction) {
+        return defs.get(instruction);
+    }
+
+    public Set<String> getLiveIn(Instruction instruction) {
+        return liveIn.get(instruction);
+    }
+
+    public Set<String> getLiveOut(Instruction instruction) {
+        return liveOut.get(instruction);
+    }
+
+    private void addDefs(Instruction instruction, Set<String> def) {
+        if (instruction.getInstType() != InstructionType.ASSIGN) return;
+
+        Element dest = ((AssignInstruction) instruction).getDest();
+
+        // storing into an array position reads the array reference instead of defining it
+        if (!(dest instanceof ArrayOperand) && dest instanceof Operand operand && isVariable(operand.getName())) {
+            def.add(operand.getName());
+        }
+    }
+
+    private void addUses(Instruction instruction, Set<String> use) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                if (assign.getDest() instanceof ArrayOperand arrayOperand) {
+                    addUse(arrayOperand, use);
+                }
+                addUses(assign.getRhs(), use);
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+                if (call.getInvocationType() != CallType.NEW) {
+                    addUse(call.getFirstArg(), use);
+                }
+                if (call.getListOfOperands() != null) {
+                    for (Element operand : call.getListOfOperands()) {
+                        addUse(operand, use);
+                    }
+                }
+            }
+            case BRANCH -> {
+                for (Element operand : ((CondBranchInstruction) instruction).getOperands()) {
+                    addUse(operand, use);
+                }
+            }
+            case RETURN -> {
+                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
+                if (returnInstruction.hasReturnValue()) {
+                    addUse(returnInstruction.getOperand(), use);
+                }
+            }
+            case GETFIELD -> addUse(((GetFieldInstruction) instruction).getFirstOperand(), use);
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                addUse(putField.getFirstOperand(), use);
+                addUse(putField.getThirdOperand(), use);
+            }
+            case UNARYOPER, BINARYOPER -> {
+                for (Element operand : ((OpInstruction) instruction).getOperands()) {
+                    addUse(operand, use);
+                }
+            }
+            case NOPER -> addUse(((SingleOpInstruction) instruction).getSingleOperand(), use);
+            default -> {
+            }
+        }
+    }
+
+    private void addUse(Element element, Set<String> use) {
+        if (element == null || element.isLiteral() || !(element instanceof Operand operand)) return;
+
+        if (isVariable(operand.getName())) {
+            use.add(operand.getName());
+        }
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (Element index : arrayOperand.getIndexOperands()) {
+                addUse(index, use);
+            }
+        }
+    }
+
+    private boolean isVariable(String name) {
+        Descriptor descriptor = method.getVarTable().get(name);
+        return descriptor != null && descriptor.getScope() != VarScope.FIELD && !name.equals("this");
+    }
+}
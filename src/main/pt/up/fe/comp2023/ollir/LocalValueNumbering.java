@@ -0,0 +1,348 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Reuses the variable that already holds the value of an expression computed earlier in the same basic block. The
+ * repeated assignment becomes a copy of that variable, and the copy is removed when all the reads of the variable it
+ * assigns are in the block and can read the earlier one instead.
+ */
+public class LocalValueNumbering {
+
+    private static final Set<OperationType> COMMUTATIVE = EnumSet.of(OperationType.ADD, OperationType.MUL,
+            OperationType.AND, OperationType.OR, OperationType.XOR, OperationType.EQ, OperationType.NEQ,
+            OperationType.ANDB, OperationType.ORB);
+
+    private final Method method;
+
+    public LocalValueNumbering(Method method) {
+        this.method = method;
+    }
+
+    // Value held by a variable, with what has to stay unchanged for it to be reused
+    private record Value(Operand holder, Set<String> variables, String field, boolean readsArray) {
+    }
+
+    public boolean optimize() {
+        List<Instruction> instructions = method.getInstructions();
+        Set<String> params = new HashSet<>();
+        for (Element param : method.getParams()) {
+            if (param instanceof Operand operand) params.add(operand.getName());
+        }
+
+        boolean optimized = false;
+        int start = 0;
+        while (start < instructions.size()) {
+            int end = findBlockEnd(start);
+            for (int copy : numberBlock(start, end, params)) {
+                optimized = true;
+                if (removeCopy(copy, end)) end--;
+            }
+            start = end;
+        }
+        return optimized;
+    }
+
+    // A block ends before the next labelled instruction or right after a jump or return
+    private int findBlockEnd(int start) {
+        List<Instruction> instructions = method.getInstructions();
+        Set<Instruction> labelled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labelled.addAll(method.getLabels().values());
+
+        for (int i = start; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (i > start && labelled.contains(instruction)) return i;
+            if (instruction instanceof GotoInstruction || instruction instanceof CondBranchInstruction
+                    || instruction instanceof ReturnInstruction) {
+                return i + 1;
+            }
+        }
+        return instructions.size();
+    }
+
+    // Turns the assignments of values already held by a variable into copies, returns their indices from the last
+    private List<Integer> numberBlock(int start, int end, Set<String> params) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Value> values = new HashMap<>();
+        List<Integer> copies = new ArrayList<>();
+
+        for (int i = start; i < end; i++) {
+            Instruction instruction = instructions.get(i);
+
+            if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)
+                    && assign.getDest() instanceof Operand dest) {
+                String key = getKey(assign.getRhs());
+                Value value = key == null ? null : values.get(key);
+
+                if (value != null) {
+                    Operand holder = new Operand(value.holder().getName(), value.holder().getType());
+                    instructions.set(i, new AssignInstruction(dest, assign.getTypeOfAssign(),
+                            new SingleOpInstruction(holder)));
+                    moveLabels(assign, instructions.get(i));
+                    copies.add(0, i);
+                }
+
+                kill(values, dest.getName());
+                if (value == null && key != null && !params.contains(dest.getName())
+                        && !getVariables(assign.getRhs()).contains(dest.getName())) {
+                    values.put(key, new Value(dest, getVariables(assign.getRhs()), getField(assign.getRhs()),
+                            readsArray(assign.getRhs())));
+                }
+                instruction = assign.getRhs();
+            }
+            else if (instruction instanceof AssignInstruction) {
+                // any array may be the one written
+                values.values().removeIf(Value::readsArray);
+                instruction = ((AssignInstruction) instruction).getRhs();
+            }
+
+            if (instruction instanceof PutFieldInstruction putField) {
+                String field = ((Operand) putField.getSecondOperand()).getName();
+                values.values().removeIf(value -> field.equals(value.field()));
+            }
+            else if (instruction instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength) {
+                // the called method can write to any field or array
+                values.values().removeIf(value -> value.field() != null || value.readsArray());
+            }
+        }
+        return copies;
+    }
+
+    private static void kill(Map<String, Value> values, String variable) {
+        values.values().removeIf(value -> value.holder().getName().equals(variable)
+                || value.variables().contains(variable));
+    }
+
+    // Same key for the expressions that always compute the same value, null for the ones that are not reused
+    private static String getKey(Instruction rhs) {
+        switch (rhs.getInstType()) {
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                OperationType operation = binaryOp.getOperation().getOpType();
+                String left = getKey(binaryOp.getLeftOperand());
+                String right = getKey(binaryOp.getRightOperand());
+                if (left == null || right == null) return null;
+
+                if (COMMUTATIVE.contains(operation) && left.compareTo(right) > 0) {
+                    return operation + " " + right + " " + left;
+                }
+                return operation + " " + left + " " + right;
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) rhs;
+                String operand = getKey(unaryOp.getOperand());
+                return operand == null ? null : unaryOp.getOperation().getOpType() + " " + operand;
+            }
+            case NOPER -> {
+                Element operand = ((SingleOpInstruction) rhs).getSingleOperand();
+                return operand instanceof ArrayOperand ? getKey(operand) : null;
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) rhs;
+                if (!((Operand) getField.getFirstOperand()).getName().equals("this")) return null;
+                return "getfield " + ((Operand) getField.getSecondOperand()).getName();
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) rhs;
+                if (call.getInvocationType() != CallType.arraylength) return null;
+                String array = getKey(call.getFirstArg());
+                return array == null ? null : "arraylength " + array;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static String getKey(Element element) {
+        if (element instanceof LiteralElement literal) return literal.getLiteral();
+        if (!(element instanceof Operand operand)) return null;
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            StringBuilder key = new StringBuilder(operand.getName());
+            for (Element index : arrayOperand.getIndexOperands()) {
+                String indexKey = getKey(index);
+                if (indexKey == null) return null;
+                key.append('[').append(indexKey).append(']');
+            }
+            return key.toString();
+        }
+        return operand.getName();
+    }
+
+    private static Set<String> getVariables(Instruction rhs) {
+        Set<String> variables = new HashSet<>();
+        List<Element> operands = switch (rhs.getInstType()) {
+            case BINARYOPER, UNARYOPER -> ((OpInstruction) rhs).getOperands();
+            case NOPER -> List.of(((SingleOpInstruction) rhs).getSingleOperand());
+            case CALL -> List.of(((CallInstruction) rhs).getFirstArg());
+            default -> List.of();
+        };
+        for (Element operand : operands) {
+            addVariables(operand, variables);
+        }
+        return variables;
+    }
+
+    private static void addVariables(Element element, Set<String> variables) {
+        if (!(element instanceof Operand operand)) return;
+
+        variables.add(operand.getName());
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (Element index : arrayOperand.getIndexOperands()) {
+                addVariables(index, variables);
+            }
+        }
+    }
+
+    private static String getField(Instruction rhs) {
+        if (!(rhs instanceof GetFieldInstruction getField)) return null;
+        return ((Operand) getField.getSecondOperand()).getName();
+    }
+
+    private static boolean readsArray(Instruction rhs) {
+        return rhs instanceof SingleOpInstruction single && single.getSingleOperand() instanceof ArrayOperand;
+    }
+
+    // Removes the copy at index, which has to be a copy of a variable, under the same conditions as the copies made
+    // here
+    boolean removeCopy(int index) {
+        return removeCopy(index, findBlockEnd(index));
+    }
+
+    // Removes the copy at index when the rest of its block reads the copied variable instead, and nothing else
+    // reads the one it assigns
+    private boolean removeCopy(int index, int end) {
+        List<Instruction> instructions = method.getInstructions();
+        AssignInstruction copy = (AssignInstruction) instructions.get(index);
+        String name = ((Operand) copy.getDest()).getName();
+        Operand holder = (Operand) ((SingleOpInstruction) copy.getRhs()).getSingleOperand();
+        // the reads after another assignment of the variable are not reads of the copy
+        if (method.getLabels().containsValue(copy) || Loop.countAssignments(method).get(name) != 1) return false;
+
+        int lastRead = index;
+        for (int i = 0; i < instructions.size(); i++) {
+            int reads = renameReads(instructions.get(i), name, holder, false);
+            if (reads == 0) continue;
+            if (reads < 0 || i <= index || i >= end) return false;
+            lastRead = i;
+        }
+        // the copied variable has to keep its value until the last read, which may assign it again
+        for (int i = index + 1; i < lastRead; i++) {
+            if (instructions.get(i) instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                    && !(dest instanceof ArrayOperand) && dest.getName().equals(holder.getName())) {
+                return false;
+            }
+        }
+
+        for (int i = index + 1; i <= lastRead; i++) {
+            renameReads(instructions.get(i), name, holder, true);
+        }
+        instructions.remove(index);
+        return true;
+    }
+
+    // Reads of the variable in the instruction, replaced by new operands of the holder when apply is set. -1 when
+    // some read cannot be replaced
+    private static int renameReads(Instruction instruction, String name, Operand holder, boolean apply) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                int reads = assign.getDest() instanceof ArrayOperand dest ? renameIndices(dest, name, holder, apply) : 0;
+                return sum(reads, renameReads(assign.getRhs(), name, holder, apply));
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                int reads = sum(countRead(binaryOp.getLeftOperand(), name, holder, apply),
+                        countRead(binaryOp.getRightOperand(), name, holder, apply));
+                if (apply && isRead(binaryOp.getLeftOperand(), name)) binaryOp.setLeftOperand(copyOf(holder));
+                if (apply && isRead(binaryOp.getRightOperand(), name)) binaryOp.setRightOperand(copyOf(holder));
+                return reads;
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) instruction;
+                int reads = countRead(unaryOp.getOperand(), name, holder, apply);
+                if (apply && isRead(unaryOp.getOperand(), name)) unaryOp.setOperand(copyOf(holder));
+                return reads;
+            }
+            case NOPER -> {
+                SingleOpInstruction single = (SingleOpInstruction) instruction;
+                int reads = countRead(single.getSingleOperand(), name, holder, apply);
+                if (apply && isRead(single.getSingleOperand(), name)) single.setSingleOperand(copyOf(holder));
+                return reads;
+            }
+            case BRANCH -> {
+                return renameReads(((CondBranchInstruction) instruction).getCondition(), name, holder, apply);
+            }
+            case RETURN -> {
+                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
+                if (!returnInstruction.hasReturnValue()) return 0;
+                int reads = countRead(returnInstruction.getOperand(), name, holder, apply);
+                if (apply && isRead(returnInstruction.getOperand(), name)) {
+                    returnInstruction.setOperand(copyOf(holder));
+                }
+                return reads;
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                int reads = countRead(putField.getThirdOperand(), name, holder, apply);
+                if (apply && isRead(putField.getThirdOperand(), name)) putField.setThirdOperand(copyOf(holder));
+                return reads;
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+                if (isRead(call.getFirstArg(), name) || call.getFirstArg() instanceof ArrayOperand) return -1;
+                int reads = 0;
+                List<Element> operands = call.getListOfOperands() == null ? List.of() : call.getListOfOperands();
+                for (int i = 0; i < operands.size(); i++) {
+                    reads = sum(reads, countRead(operands.get(i), name, holder, apply));
+                    if (apply && isRead(operands.get(i), name)) operands.set(i, copyOf(holder));
+                }
+                return reads;
+            }
+            default -> {
+                return 0;
+            }
+        }
+    }
+
+    // 1 when the element is the variable itself, the reads in its indices when it is an array access
+    private static int countRead(Element element, String name, Operand holder, boolean apply) {
+        if (element instanceof ArrayOperand arrayOperand) {
+            if (arrayOperand.getName().equals(name)) return -1;
+            return renameIndices(arrayOperand, name, holder, apply);
+        }
+        return isRead(element, name) ? 1 : 0;
+    }
+
+    private static int renameIndices(ArrayOperand arrayOperand, String name, Operand holder, boolean apply) {
+        List<Element> indices = arrayOperand.getIndexOperands();
+        int reads = 0;
+        for (int i = 0; i < indices.size(); i++) {
+            reads = sum(reads, countRead(indices.get(i), name, holder, apply));
+            if (apply && isRead(indices.get(i), name)) indices.set(i, copyOf(holder));
+        }
+        return reads;
+    }
+
+    private static boolean isRead(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private static int sum(int reads, int more) {
+        return reads < 0 || more < 0 ? -1 : reads + more;
+    }
+
+    private static Operand copyOf(Operand operand) {
+        return new Operand(operand.getName(), operand.getType());
+    }
+
+    private void moveLabels(Instruction from, Instruction to) {
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (label.getValue() == from) label.setValue(to);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Code of a method from a label to the last jump back to it. Only loops entered in a single place are kept: falling
+ * through or jumping to the header, or through a goto right before the header to the condition at the bottom. Code
+ * added at the preheader runs once every time the loop is entered.
+ *
+ * @param entry       first instruction of the loop that runs
+ * @param preheader   index where the code that runs before the loop is added
+ * @param entryLabels labels that lead into the loop from outside, which move to the code added at the preheader
+ */
+record Loop(int header, int end, int entry, int preheader, Set<String> entryLabels) {
+
+    boolean contains(int index) {
+        return index >= header && index <= end;
+    }
+
+    // Innermost loops first, so what leaves them can leave the enclosing loops too
+    static List<Loop> find(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Integer> indices = indexInstructions(method);
+
+        Map<Integer, Integer> ends = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            String label = getJumpLabel(instructions.get(i));
+            if (label == null) continue;
+
+            int target = indices.get(method.getLabels().get(label));
+            if (target <= i) ends.merge(target, i, Math::max);
+        }
+
+        List<Loop> loops = new ArrayList<>();
+        ends.forEach((header, end) -> {
+            Loop loop = withEntry(method, header, end, indices);
+            if (loop != null) loops.add(loop);
+        });
+        loops.sort(Comparator.comparingInt(loop -> loop.end() - loop.header()));
+        return loops;
+    }
+
+    private static Loop withEntry(Method method, int header, int end, Map<Instruction, Integer> indices) {
+        List<Instruction> instructions = method.getInstructions();
+
+        int entry = header;
+        Set<String> entryLabels = new HashSet<>();
+        Set<String> backLabels = new HashSet<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            String label = getJumpLabel(instructions.get(i));
+            if (label == null) continue;
+
+            int target = indices.get(method.getLabels().get(label));
+            if (target < header || target > end) continue;
+            if (i >= header && i <= end) {
+                if (target == header) backLabels.add(label);
+            }
+            else if (target == header) entryLabels.add(label);
+            else if (i == header - 1 && instructions.get(i) instanceof GotoInstruction) entry = target;
+            else return null;
+        }
+        if (!Collections.disjoint(entryLabels, backLabels)) return null;
+
+        // the added code goes before the goto, which takes the jumps to it along
+        int preheader = header;
+        if (entry != header) {
+            if (!entryLabels.isEmpty()) return null;
+            preheader--;
+            for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+                if (label.getValue() == instructions.get(preheader)) entryLabels.add(label.getKey());
+            }
+        }
+        return new Loop(header, end, entry, preheader, entryLabels);
+    }
+
+    // Adds the code to run before the loop, after the instructions before the preheader are in place
+    void addToPreheader(Method method, List<Instruction> code) {
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (entryLabels.contains(label.getKey())) label.setValue(code.get(0));
+        }
+        method.getInstructions().addAll(preheader, code);
+    }
+
+    static Map<Instruction, Integer> indexInstructions(Method method) {
+        Map<Instruction, Integer> indices = new IdentityHashMap<>();
+        List<Instruction> instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            indices.put(instructions.get(i), i);
+        }
+        return indices;
+    }
+
+    static String getJumpLabel(Instruction instruction) {
+        if (instruction instanceof GotoInstruction gotoInstruction) return gotoInstruction.getLabel();
+        if (instruction instanceof CondBranchInstruction branch) return branch.getLabel();
+        return null;
+    }
+
+    // Assignments to each variable in the whole method, where the parameters are assigned by the call
+    static Map<String, Integer> countAssignments(Method method) {
+        Map<String, Integer> assignments = new HashMap<>();
+        for (Element param : method.getParams()) {
+            if (param instanceof Operand operand) assignments.merge(operand.getName(), 1, Integer::sum);
+        }
+        for (Instruction instruction : method.getInstructions()) {
+            addAssignment(instruction, assignments);
+        }
+        return assignments;
+    }
+
+    Map<String, Integer> countAssignments(List<Instruction> instructions) {
+        Map<String, Integer> assignments = new HashMap<>();
+        for (int i = header; i <= end; i++) {
+            addAssignment(instructions.get(i), assignments);
+        }
+        return assignments;
+    }
+
+    private static void addAssignment(Instruction instruction, Map<String, Integer> assignments) {
+        if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand)) {
+            assignments.merge(dest.getName(), 1, Integer::sum);
+        }
+    }
+}
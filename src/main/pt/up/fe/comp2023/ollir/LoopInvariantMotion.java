@@ -0,0 +1,178 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Moves the assignments whose value does not change while a {@link Loop} runs to right before the loop. Only
+ * variables with a single assignment in the method are moved: for the method to verify that assignment runs before
+ * every read of the variable, so computing it earlier gives the same value everywhere.
+ */
+public class LoopInvariantMotion {
+
+    private final Method method;
+
+    public LoopInvariantMotion(Method method) {
+        this.method = method;
+    }
+
+    public boolean optimize() {
+        boolean optimized = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // moving instructions shifts the loops that come after, so they are found again
+            for (Loop loop : Loop.find(method)) {
+                if (hoist(loop)) {
+                    optimized = changed = true;
+                    break;
+                }
+            }
+        }
+        return optimized;
+    }
+
+    private boolean hoist(Loop loop) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Integer> indices = Loop.indexInstructions(method);
+
+        LoopEffects effects = new LoopEffects(loop, instructions);
+        Map<String, Integer> assignments = Loop.countAssignments(method);
+        int firstRuns = countFirstRuns(loop, instructions, indices);
+
+        List<Instruction> hoisted = new ArrayList<>();
+        for (int i = loop.header(); i <= loop.end(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) continue;
+            if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) continue;
+            if (assignments.get(dest.getName()) != 1) continue;
+
+            boolean runsFirst = i >= loop.entry() && i < loop.entry() + firstRuns;
+            if (isInvariant(assign.getRhs(), effects, runsFirst)) hoisted.add(assign);
+        }
+        if (hoisted.isEmpty()) return false;
+
+        moveLabels(hoisted, indices);
+        instructions.removeAll(hoisted);
+        loop.addToPreheader(method, hoisted);
+        return true;
+    }
+
+    // What the code of a loop writes, which the invariant values cannot depend on
+    private static class LoopEffects {
+        final Set<String> variables = new HashSet<>();
+        final Set<String> fields = new HashSet<>();
+        boolean arrayStores = false;
+        boolean calls = false;
+
+        LoopEffects(Loop loop, List<Instruction> instructions) {
+            for (int i = loop.header(); i <= loop.end(); i++) {
+                Instruction instruction = instructions.get(i);
+                if (instruction instanceof AssignInstruction assign) {
+                    if (assign.getDest() instanceof ArrayOperand) arrayStores = true;
+                    else if (assign.getDest() instanceof Operand dest) variables.add(dest.getName());
+                    instruction = assign.getRhs();
+                }
+
+                if (instruction instanceof PutFieldInstruction putField) {
+                    fields.add(((Operand) putField.getSecondOperand()).getName());
+                }
+                else if (instruction instanceof CallInstruction call
+                        && call.getInvocationType() != CallType.arraylength) {
+                    calls = true;
+                }
+            }
+        }
+    }
+
+    // runsFirst tells the instruction runs on every entry before anything that can throw, so it may throw too
+    private boolean isInvariant(Instruction rhs, LoopEffects effects, boolean runsFirst) {
+        switch (rhs.getInstType()) {
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                if (binaryOp.getOperation().getOpType() == OperationType.DIV && !runsFirst) return false;
+                return isInvariant(binaryOp.getLeftOperand(), effects, runsFirst)
+                        && isInvariant(binaryOp.getRightOperand(), effects, runsFirst);
+            }
+            case UNARYOPER -> {
+                return isInvariant(((UnaryOpInstruction) rhs).getOperand(), effects, runsFirst);
+            }
+            case NOPER -> {
+                return isInvariant(((SingleOpInstruction) rhs).getSingleOperand(), effects, runsFirst);
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) rhs;
+                return ((Operand) getField.getFirstOperand()).getName().equals("this") && !effects.calls
+                        && !effects.fields.contains(((Operand) getField.getSecondOperand()).getName());
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) rhs;
+                return call.getInvocationType() == CallType.arraylength && runsFirst
+                        && isInvariant(call.getFirstArg(), effects, runsFirst);
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private boolean isInvariant(Element element, LoopEffects effects, boolean runsFirst) {
+        if (element.isLiteral()) return true;
+        if (!(element instanceof Operand operand) || effects.variables.contains(operand.getName())) return false;
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            if (!runsFirst || effects.arrayStores || effects.calls) return false;
+            for (Element index : arrayOperand.getIndexOperands()) {
+                if (!isInvariant(index, effects, runsFirst)) return false;
+            }
+        }
+        return true;
+    }
+
+    // Instructions from the entry that run on every entry before the first one that may throw or have effects
+    private int countFirstRuns(Loop loop, List<Instruction> instructions, Map<Instruction, Integer> indices) {
+        Set<Integer> labelled = new HashSet<>();
+        for (Instruction target : method.getLabels().values()) {
+            labelled.add(indices.get(target));
+        }
+
+        int count = 0;
+        for (int i = loop.entry(); i <= loop.end(); i++) {
+            if (i > loop.entry() && labelled.contains(i)) break;
+            Instruction instruction = instructions.get(i);
+            if (Loop.getJumpLabel(instruction) != null) break;
+
+            count++;
+            if (!isSafe(instruction)) break;
+        }
+        return count;
+    }
+
+    // Assignments of values that are computed without side effects or exceptions
+    private static boolean isSafe(Instruction instruction) {
+        if (!(instruction instanceof AssignInstruction assign) || assign.getDest() instanceof ArrayOperand) return false;
+
+        Instruction rhs = assign.getRhs();
+        return switch (rhs.getInstType()) {
+            case BINARYOPER -> ((BinaryOpInstruction) rhs).getOperation().getOpType() != OperationType.DIV;
+            case UNARYOPER, GETFIELD -> true;
+            case NOPER -> !(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand);
+            default -> false;
+        };
+    }
+
+    // Labels of the moved instructions go to the next one that stays
+    private void moveLabels(List<Instruction> hoisted, Map<Instruction, Integer> indices) {
+        List<Instruction> instructions = method.getInstructions();
+        Set<Instruction> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+        moved.addAll(hoisted);
+
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (!moved.contains(label.getValue())) continue;
+
+            int index = indices.get(label.getValue());
+            while (moved.contains(instructions.get(index))) index++;
+            label.setValue(instructions.get(index));
+        }
+    }
+}
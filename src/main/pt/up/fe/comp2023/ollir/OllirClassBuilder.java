@@ -0,0 +1,500 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.CompilerStats;
+import pt.up.fe.comp2023.semanticAnalysis.ScopedSymbol;
+import pt.up.fe.comp2023.semanticAnalysis.SymbolTableImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2023.ollir.OllirUtils.toOllirType;
+
+/**
+ * Builds the OLLIR class unit straight from the AST, without writing OLLIR code for the parser to read back.
+ * Statements add their instructions to the method being built. Expressions return the instruction that computes
+ * their value, after adding the instructions that put its operands in variables, and are visited with the type the
+ * enclosing code expects from them, or null when it is unknown.
+ */
+public class OllirClassBuilder extends AJmmVisitor<Type, Instruction> {
+
+    private final SymbolTableImpl symbolTable;
+    private final OllirContext context;
+    private final ClassUnit classUnit;
+    private final List<String> labels;
+    private Method method;
+    private String methodName;
+
+    public OllirClassBuilder(SymbolTableImpl symbolTable) {
+        this(symbolTable, new ClassUnit());
+    }
+
+    private OllirClassBuilder(SymbolTableImpl symbolTable, ClassUnit classUnit) {
+        this.symbolTable = symbolTable;
+        this.context = new OllirContext();
+        this.classUnit = classUnit;
+        this.labels = new ArrayList<>();
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit("Program", this::visitProgram);
+        addVisit("ClassDeclaration", this::visitClassDeclaration);
+
+        addVisit("Stmt", this::visitStmt);
+        addVisit("IfElseStmt", this::visitIfElseStmt);
+        addVisit("IfStmt", this::visitIfStmt);
+        addVisit("WhileStmt", this::visitWhileStmt);
+        addVisit("ExprStmt", this::visitExprStmt);
+        addVisit("AssignmentStmt", this::visitAssignment);
+        addVisit("ArrayAssignmentStmt", this::visitArrayAssignment);
+
+        addVisit("Brackets", this::visitBrackets);
+        addVisit("ArrayAccess", this::visitArrayAccess);
+        addVisit("Length", this::visitLength);
+        addVisit("MethodCall", this::visitMethodCall);
+        addVisit("Denial", this::visitDenial);
+        addVisit("BinaryOp", this::visitBinaryOp);
+        addVisit("BoolOp", this::visitBinaryOp);
+        addVisit("IntDeclaration", this::visitIntDeclaration);
+        addVisit("NewObject", this::visitNewObject);
+        addVisit("Integer", this::visitInteger);
+        addVisit("Boolean", this::visitBoolean);
+        addVisit("Identifier", this::visitIdentifier);
+        addVisit("This", this::visitThis);
+
+        setDefaultVisit((node, expected) -> null);
+    }
+
+    public ClassUnit build(JmmNode root) {
+        visit(root, null);
+        return classUnit;
+    }
+
+    private Instruction visitProgram(JmmNode program, Type expected) {
+        for (String imported : symbolTable.getImports()) {
+            classUnit.addImport(imported);
+        }
+
+        for (JmmNode child : program.getChildren()) {
+            if (!child.getKind().equals("Import")) {
+                visit(child, null);
+            }
+        }
+        return null;
+    }
+
+    private Instruction visitClassDeclaration(JmmNode classDeclaration, Type expected) {
+        classUnit.setClassName(symbolTable.getClassName());
+        if (symbolTable.getSuper() != null) {
+            classUnit.setSuperClass(symbolTable.getSuper());
+        }
+
+        for (Symbol symbol : symbolTable.getFields()) {
+            Field field = new Field();
+            field.setFieldName(symbol.getName());
+            field.setFieldType(toOllirType(symbol.getType()));
+            field.setFieldAccessModifier(AccessModifiers.PRIVATE);
+            classUnit.addField(field);
+        }
+
+        classUnit.addMethod(emptyConstructor());
+
+        List<JmmNode> methodNodes = new ArrayList<>();
+        for (JmmNode child : classDeclaration.getChildren()) {
+            if (!child.getKind().equals("VarDeclaration")) {
+                methodNodes.add(child);
+            }
+        }
+
+        // methods only share the symbol table and the class unit, so each one is built in parallel by a builder of
+        // its own, and they are added in declaration order
+        List<Method> methods = CompilerStats.measureEach(methodNodes, OllirUtils::getMethodName,
+                methodNode -> new OllirClassBuilder(symbolTable, classUnit).buildMethod(methodNode));
+        for (Method method : methods) {
+            classUnit.addMethod(method);
+        }
+        return null;
+    }
+
+    private Method buildMethod(JmmNode methodNode) {
+        boolean isMainMethod = methodNode.getKind().equals("MainMethod");
+        methodName = OllirUtils.getMethodName(methodNode);
+        method = new Method(classUnit);
+        context.startMethod();
+
+        method.setMethodName(methodName);
+        method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+        if (isMainMethod) {
+            method.setStaticMethod();
+        }
+
+        List<Symbol> parameters = symbolTable.getParameters(methodName);
+        for (int i = 0; i < parameters.size(); i++) {
+            Operand parameter = new Operand(parameters.get(i).getName(), toOllirType(parameters.get(i).getType()));
+            parameter.setParamId(isMainMethod ? i : i + 1);
+            method.addParam(parameter);
+        }
+        Type returnType = toOllirType(symbolTable.getReturnType(methodName));
+        method.setReturnType(returnType);
+
+        // the last child of a method that is not main is the returned expression
+        List<JmmNode> children = methodNode.getChildren();
+        List<JmmNode> statements = isMainMethod ? children : children.subList(0, children.size() - 1);
+        for (JmmNode statement : statements) {
+            visit(statement, null);
+        }
+
+        ReturnInstruction ret;
+        if (returnType.getTypeOfElement() == ElementType.VOID) {
+            ret = new ReturnInstruction();
+        } else {
+            ret = new ReturnInstruction(operand(children.get(children.size() - 1), returnType));
+        }
+        ret.setReturnType(returnType);
+        emit(ret);
+
+        return method;
+    }
+
+    // ******** STATEMENTS ******** //
+
+    private Instruction visitStmt(JmmNode stmt, Type expected) {
+        for (JmmNode child : stmt.getChildren()) {
+            visit(child, null);
+        }
+        return null;
+    }
+
+    // if (condition) goto THEN; (else) goto ENDIF; THEN: (then) ENDIF:
+    private Instruction visitIfElseStmt(JmmNode ifElse, Type expected) {
+        String thenLabel = context.nextLabel("THEN");
+        String endifLabel = context.nextLabel("ENDIF");
+
+        branch(ifElse.getJmmChild(0), true, thenLabel);
+        visit(ifElse.getJmmChild(2), null);
+        emit(new GotoInstruction(endifLabel));
+
+        labels.add(thenLabel);
+        visit(ifElse.getJmmChild(1), null);
+        labels.add(endifLabel);
+        return null;
+    }
+
+    private Instruction visitIfStmt(JmmNode ifStmt, Type expected) {
+        String endifLabel = context.nextLabel("ENDIF");
+
+        branch(ifStmt.getJmmChild(0), false, endifLabel);
+        visit(ifStmt.getJmmChild(1), null);
+        labels.add(endifLabel);
+        return null;
+    }
+
+    // goto WHILE; BODY: (body) WHILE: if (condition) goto BODY;
+    private Instruction visitWhileStmt(JmmNode whileStmt, Type expected) {
+        String whileLabel = context.nextLabel("WHILE");
+        String bodyLabel = context.nextLabel("BODY");
+
+        emit(new GotoInstruction(whileLabel));
+        labels.add(bodyLabel);
+        visit(whileStmt.getJmmChild(1), null);
+        labels.add(whileLabel);
+        branch(whileStmt.getJmmChild(0), true, bodyLabel);
+        return null;
+    }
+
+    private Instruction visitExprStmt(JmmNode exprStmt, Type expected) {
+        // only a call has effects of its own, the code of its operands has already been added
+        Instruction value = visit(exprStmt.getJmmChild(0), new Type(ElementType.VOID));
+        if (value instanceof CallInstruction) {
+            emit(value);
+        }
+        return null;
+    }
+
+    private Instruction visitAssignment(JmmNode assignment, Type expected) {
+        String name = assignment.get("name");
+        Operand variable = variable(name);
+
+        if (variable != null) {
+            Instruction value = visit(assignment.getJmmChild(0), variable.getType());
+            emit(new AssignInstruction(variable, variable.getType(), value));
+            return null;
+        }
+
+        Type type = toOllirType(field(name).getType());
+        Element value = operand(assignment.getJmmChild(0), type);
+        emit(new PutFieldInstruction(thisOperand(), new Operand(name, type), value, new Type(ElementType.VOID)));
+        return null;
+    }
+
+    private Instruction visitArrayAssignment(JmmNode assignment, Type expected) {
+        String name = assignment.get("name");
+        Operand array = variable(name);
+        if (array == null) {
+            array = temp(getField(field(name)));
+        }
+
+        ArrayList<Element> indexes = new ArrayList<>();
+        indexes.add(operand(assignment.getJmmChild(0), new Type(ElementType.INT32)));
+        Element value = operand(assignment.getJmmChild(1), new Type(ElementType.INT32));
+
+        emit(new AssignInstruction(arrayOperand(array, indexes), new Type(ElementType.INT32), new SingleOpInstruction(value)));
+        return null;
+    }
+
+    // ******** EXPRESSIONS ******** //
+
+    private Instruction visitBrackets(JmmNode brackets, Type expected) {
+        return visit(brackets.getJmmChild(0), expected);
+    }
+
+    private Instruction visitArrayAccess(JmmNode arrayAccess, Type expected) {
+        Operand array = (Operand) operand(arrayAccess.getJmmChild(0), intArrayType());
+        ArrayList<Element> indexes = new ArrayList<>();
+        indexes.add(operand(arrayAccess.getJmmChild(1), new Type(ElementType.INT32)));
+
+        return new SingleOpInstruction(arrayOperand(array, indexes));
+    }
+
+    private Instruction visitLength(JmmNode length, Type expected) {
+        Element array = operand(length.getJmmChild(0), intArrayType());
+        return new CallInstruction(CallType.arraylength, array, new Type(ElementType.INT32));
+    }
+
+    private Instruction visitMethodCall(JmmNode methodCall, Type expected) {
+        String name = methodCall.get("name");
+        Element object = operand(methodCall.getJmmChild(0), null);
+        boolean isStatic = object.getType().getTypeOfElement() == ElementType.CLASS;
+
+        // methods of other classes are typed by where their result is used
+        boolean isDeclared = isThisClass(object.getType()) && symbolTable.getMethods().contains(name);
+        List<Symbol> parameters = isDeclared ? symbolTable.getParameters(name) : List.of();
+        Type returnType;
+        if (isDeclared) {
+            returnType = toOllirType(symbolTable.getReturnType(name));
+        } else {
+            returnType = expected != null ? expected : new Type(ElementType.INT32);
+        }
+
+        ArrayList<Element> arguments = new ArrayList<>();
+        for (int i = 1; i < methodCall.getNumChildren(); i++) {
+            Type parameterType = i - 1 < parameters.size() ? toOllirType(parameters.get(i - 1).getType()) : null;
+            arguments.add(operand(methodCall.getJmmChild(i), parameterType));
+        }
+
+        return new CallInstruction(isStatic ? CallType.invokestatic : CallType.invokevirtual, object,
+                methodName(name), arguments, returnType);
+    }
+
+    private Instruction visitDenial(JmmNode denial, Type expected) {
+        Element value = operand(denial.getJmmChild(0), new Type(ElementType.BOOLEAN));
+        return new UnaryOpInstruction(new Operation(OperationType.NOTB, new Type(ElementType.BOOLEAN)), value);
+    }
+
+    private Instruction visitBinaryOp(JmmNode binaryOp, Type expected) {
+        String op = binaryOp.get("op");
+        OperationType opType = switch (op) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case "&&" -> OperationType.ANDB;
+            default -> throw new IllegalArgumentException("Unknown operator " + op);
+        };
+        ElementType operandType = op.equals("&&") ? ElementType.BOOLEAN : ElementType.INT32;
+        ElementType resultType = op.equals("<") || op.equals("&&") ? ElementType.BOOLEAN : ElementType.INT32;
+
+        Element left = operand(binaryOp.getJmmChild(0), new Type(operandType));
+        Element right = operand(binaryOp.getJmmChild(1), new Type(operandType));
+        return new BinaryOpInstruction(left, new Operation(opType, new Type(resultType)), right);
+    }
+
+    private Instruction visitIntDeclaration(JmmNode intDeclaration, Type expected) {
+        ArrayList<Element> size = new ArrayList<>();
+        size.add(operand(intDeclaration.getJmmChild(0), new Type(ElementType.INT32)));
+        return new CallInstruction(CallType.NEW, new Operand("array", intArrayType()), size, intArrayType());
+    }
+
+    // t := new(A); invokespecial(t, "<init>"), the object can only be used once its constructor has run
+    private Instruction visitNewObject(JmmNode newObject, Type expected) {
+        String name = newObject.get("name");
+        Operand object = temp(new CallInstruction(CallType.NEW, new Operand(name, new ClassType(ElementType.OBJECTREF, name)),
+                new ArrayList<>(), new ClassType(ElementType.OBJECTREF, name)));
+        emit(new CallInstruction(CallType.invokespecial, object, methodName("<init>"), new ArrayList<>(),
+                new Type(ElementType.VOID)));
+        return new SingleOpInstruction(object);
+    }
+
+    private Instruction visitInteger(JmmNode integer, Type expected) {
+        return new SingleOpInstruction(new LiteralElement(integer.get("value"), new Type(ElementType.INT32)));
+    }
+
+    private Instruction visitBoolean(JmmNode bool, Type expected) {
+        String value = bool.get("value").equals("true") ? "1" : "0";
+        return new SingleOpInstruction(new LiteralElement(value, new Type(ElementType.BOOLEAN)));
+    }
+
+    private Instruction visitIdentifier(JmmNode identifier, Type expected) {
+        String name = identifier.get("value");
+
+        Operand variable = variable(name);
+        if (variable != null) {
+            return new SingleOpInstruction(variable);
+        }
+        Symbol field = field(name);
+        if (field != null) {
+            return getField(field);
+        }
+
+        // neither a variable nor a field, so a class whose static methods are called
+        return new SingleOpInstruction(new Operand(name, new ClassType(ElementType.CLASS, name)));
+    }
+
+    private Instruction visitThis(JmmNode thisNode, Type expected) {
+        return new SingleOpInstruction(thisOperand());
+    }
+
+    // ******** AUX FUNCTIONS ******** //
+
+    private void emit(Instruction instruction) {
+        for (String label : labels) {
+            method.addLabel(label, instruction);
+        }
+        labels.clear();
+        method.addInstr(instruction);
+    }
+
+    // Element holding the value of an expression, moved to a new temporary unless it already is a variable or literal
+    private Element operand(JmmNode expression, Type expected) {
+        Instruction value = visit(expression, expected);
+        if (value instanceof SingleOpInstruction single && !(single.getSingleOperand() instanceof ArrayOperand)) {
+            return single.getSingleOperand();
+        }
+        return temp(value);
+    }
+
+    private Operand temp(Instruction value) {
+        Type type = resultType(value);
+        Operand temp = new Operand(context.nextTemp(), type);
+        emit(new AssignInstruction(temp, type, value));
+        return temp;
+    }
+
+    // Jumps to label when the condition evaluates to value. Comparisons jump on their operands and && jumps on each
+    // side in turn, so neither is turned into a bool first, and ! only swaps the value jumped on
+    private void branch(JmmNode condition, boolean value, String label) {
+        if (condition.getKind().equals("Brackets")) {
+            branch(condition.getJmmChild(0), value, label);
+            return;
+        }
+        if (condition.getKind().equals("Denial")) {
+            branch(condition.getJmmChild(0), !value, label);
+            return;
+        }
+        if (condition.getKind().equals("BoolOp") && condition.get("op").equals("&&")) {
+            if (value) {
+                // both sides have to hold, so a false left side skips the jump
+                String skipLabel = context.nextLabel("ENDAND");
+                branch(condition.getJmmChild(0), false, skipLabel);
+                branch(condition.getJmmChild(1), true, label);
+                labels.add(skipLabel);
+            } else {
+                branch(condition.getJmmChild(0), false, label);
+                branch(condition.getJmmChild(1), false, label);
+            }
+            return;
+        }
+
+        CondBranchInstruction jump;
+        if (condition.getKind().equals("BoolOp") && condition.get("op").equals("<")) {
+            Element left = operand(condition.getJmmChild(0), new Type(ElementType.INT32));
+            Element right = operand(condition.getJmmChild(1), new Type(ElementType.INT32));
+            Operation operation = new Operation(value ? OperationType.LTH : OperationType.GTE, new Type(ElementType.BOOLEAN));
+            jump = new OpCondInstruction(new BinaryOpInstruction(left, operation, right));
+        } else {
+            Element result = operand(condition, new Type(ElementType.BOOLEAN));
+            Operation not = new Operation(OperationType.NOTB, new Type(ElementType.BOOLEAN));
+            jump = value ? new SingleOpCondInstruction(new SingleOpInstruction(result))
+                    : new OpCondInstruction(new UnaryOpInstruction(not, result));
+        }
+
+        jump.setLabel(label);
+        emit(jump);
+    }
+
+    private static Type resultType(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case NOPER -> ((SingleOpInstruction) instruction).getSingleOperand().getType();
+            case BINARYOPER, UNARYOPER -> ((OpInstruction) instruction).getOperation().getTypeInfo();
+            case CALL -> ((CallInstruction) instruction).getReturnType();
+            case GETFIELD -> ((GetFieldInstruction) instruction).getFieldType();
+            default -> throw new IllegalArgumentException("Instruction has no value: " + instruction.getInstType());
+        };
+    }
+
+    private Method emptyConstructor() {
+        Method constructor = new Method(classUnit);
+        constructor.setConstructMethod();
+        constructor.setMethodName(symbolTable.getClassName());
+        constructor.setReturnType(new Type(ElementType.VOID));
+        constructor.addInstr(new CallInstruction(CallType.invokespecial, thisOperand(), methodName("<init>"),
+                new ArrayList<>(), new Type(ElementType.VOID)));
+        return constructor;
+    }
+
+    // Local variable or parameter of the current method, null when the name is not one
+    private Operand variable(String name) {
+        ScopedSymbol variable = symbolTable.lookup(methodName, name);
+        if (variable == null || variable.isField()) {
+            return null;
+        }
+
+        Operand operand = new Operand(name, toOllirType(variable.getSymbol().getType()));
+        if (variable.getKind() == ScopedSymbol.Kind.PARAMETER) {
+            int index = variable.getParameterIndex();
+            operand.setParamId(method.isStaticMethod() ? index : index + 1);
+        }
+        return operand;
+    }
+
+    private Symbol field(String name) {
+        ScopedSymbol variable = symbolTable.lookup(methodName, name);
+        return variable != null && variable.isField() ? variable.getSymbol() : null;
+    }
+
+    private Instruction getField(Symbol field) {
+        Type type = toOllirType(field.getType());
+        return new GetFieldInstruction(thisOperand(), new Operand(field.getName(), type), type);
+    }
+
+    private boolean isThisClass(Type type) {
+        return type.getTypeOfElement() == ElementType.THIS
+                || type instanceof ClassType classType && classType.getName().equals(symbolTable.getClassName());
+    }
+
+    private ArrayOperand arrayOperand(Operand array, ArrayList<Element> indexes) {
+        ArrayOperand arrayOperand = new ArrayOperand(array.getName(), new Type(ElementType.INT32), indexes);
+        arrayOperand.setParamId(array.getParamId());
+        return arrayOperand;
+    }
+
+    private Operand thisOperand() {
+        return new Operand("this", new ClassType(ElementType.THIS, symbolTable.getClassName()));
+    }
+
+    private static Element methodName(String name) {
+        return new LiteralElement("\"" + name + "\"", new Type(ElementType.STRING));
+    }
+
+    private static Type intArrayType() {
+        ArrayType type = new ArrayType();
+        type.setNumDimensions(1);
+        type.setTypeOfElements(ElementType.INT32);
+        return type;
+    }
+}
@@ -0,0 +1,24 @@
+package pt.up.fe.comp2023.ollir;
+
+/**
+ * Naming state of a single OLLIR generation. Temporaries and labels only need to be unique inside a method,
+ * so both counters restart for every method.
+ */
+public class OllirContext {
+
+    private int tempCounter = 0;
+    private int labelCounter = 0;
+
+    public void startMethod() {
+        tempCounter = 0;
+        labelCounter = 0;
+    }
+
+    public String nextTemp() {
+        return "t" + (tempCounter++);
+    }
+
+    public String nextLabel(String prefix) {
+        return prefix + "_" + labelCounter++;
+    }
+}
@@ -0,0 +1,191 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.*;
+
+import java.util.List;
+
+/**
+ * Writes a class unit as OLLIR code that parses back to the same class unit. Used to show the code of a class unit
+ * built in memory and for the OllirResult of toOllir, the backends read the class unit itself.
+ */
+public class OllirPrinter {
+
+    private final StringBuilder code;
+
+    private OllirPrinter() {
+        this.code = new StringBuilder();
+    }
+
+    public static String print(ClassUnit classUnit) {
+        OllirPrinter printer = new OllirPrinter();
+        printer.printClass(classUnit);
+        return printer.code.toString();
+    }
+
+    private void printClass(ClassUnit classUnit) {
+        for (String imported : classUnit.getImports()) {
+            code.append("import ").append(imported).append(";\n");
+        }
+
+        code.append(classUnit.getClassName());
+        if (classUnit.getSuperClass() != null) {
+            code.append(" extends ").append(classUnit.getSuperClass());
+        }
+        code.append(" {\n");
+
+        for (Field field : classUnit.getFields()) {
+            code.append(".field private ").append(field.getFieldName()).append(".")
+                    .append(type(field.getFieldType())).append(";\n");
+        }
+
+        for (Method method : classUnit.getMethods()) {
+            printMethod(method);
+        }
+        code.append("}");
+    }
+
+    private void printMethod(Method method) {
+        if (method.isConstructMethod()) {
+            code.append(".construct ");
+        } else {
+            code.append(".method public ");
+            if (method.isStaticMethod()) code.append("static ");
+        }
+        code.append(method.getMethodName()).append("(");
+
+        List<Element> parameters = method.getParams();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) code.append(", ");
+            code.append(((Operand) parameters.get(i)).getName()).append(".").append(type(parameters.get(i).getType()));
+        }
+        code.append(").").append(type(method.getReturnType())).append(" {\n");
+
+        for (Instruction instruction : method.getInstructions()) {
+            for (String label : method.getLabels(instruction)) {
+                code.append(label).append(":\n");
+            }
+            printInstruction(instruction);
+            code.append(";\n");
+        }
+        code.append("}\n\n");
+    }
+
+    private void printInstruction(Instruction instruction) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                code.append(element(assign.getDest())).append(" :=.").append(type(assign.getTypeOfAssign())).append(" ");
+                printInstruction(assign.getRhs());
+            }
+            case CALL -> printCall((CallInstruction) instruction);
+            case GOTO -> code.append("goto ").append(((GotoInstruction) instruction).getLabel());
+            case BRANCH -> {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                code.append("if (");
+                printInstruction(branch.getCondition());
+                code.append(") goto ").append(branch.getLabel());
+            }
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                code.append("ret.").append(type(ret.getReturnType()));
+                if (ret.hasReturnValue()) code.append(" ").append(element(ret.getOperand()));
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                code.append("putfield(").append(element(putField.getFirstOperand())).append(", ")
+                        .append(element(putField.getSecondOperand())).append(", ")
+                        .append(element(putField.getThirdOperand())).append(").V");
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) instruction;
+                code.append("getfield(").append(element(getField.getFirstOperand())).append(", ")
+                        .append(element(getField.getSecondOperand())).append(").").append(type(getField.getFieldType()));
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unary = (UnaryOpInstruction) instruction;
+                code.append(operator(unary.getOperation())).append(" ").append(element(unary.getOperand()));
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                code.append(element(binary.getLeftOperand())).append(" ").append(operator(binary.getOperation()))
+                        .append(" ").append(element(binary.getRightOperand()));
+            }
+            case NOPER -> code.append(element(((SingleOpInstruction) instruction).getSingleOperand()));
+        }
+    }
+
+    private void printCall(CallInstruction call) {
+        switch (call.getInvocationType()) {
+            case NEW -> {
+                Type type = call.getReturnType();
+                code.append("new(").append(type instanceof ArrayType ? "array" : ((ClassType) type).getName());
+                printArguments(call.getListOfOperands());
+            }
+            case arraylength -> code.append("arraylength(").append(element(call.getFirstArg()));
+            default -> {
+                code.append(call.getInvocationType()).append("(").append(element(call.getFirstArg()))
+                        .append(", ").append(element(call.getSecondArg()));
+                printArguments(call.getListOfOperands());
+            }
+        }
+        code.append(").").append(type(call.getReturnType()));
+    }
+
+    private void printArguments(List<Element> arguments) {
+        for (Element argument : arguments) {
+            code.append(", ").append(element(argument));
+        }
+    }
+
+    private static String element(Element element) {
+        if (element instanceof LiteralElement literal) {
+            // method names are the only string literals, and are written without a type
+            if (literal.getType().getTypeOfElement() == ElementType.STRING) return literal.getLiteral();
+            return literal.getLiteral() + "." + type(literal.getType());
+        }
+
+        Operand operand = (Operand) element;
+        if (operand.getType().getTypeOfElement() == ElementType.CLASS) return operand.getName();
+
+        StringBuilder code = new StringBuilder();
+        if (operand.getParamId() > 0) code.append("$").append(operand.getParamId()).append(".");
+        code.append(operand.getName());
+        if (operand instanceof ArrayOperand array) {
+            for (Element index : array.getIndexOperands()) {
+                code.append("[").append(element(index)).append("]");
+            }
+        }
+        return code.append(".").append(type(operand.getType())).toString();
+    }
+
+    private static String operator(Operation operation) {
+        String operator = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case LTH -> "<";
+            case GTH -> ">";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            default -> throw new IllegalArgumentException("Unsupported operation " + operation.getOpType());
+        };
+        return operator + "." + type(operation.getTypeInfo());
+    }
+
+    private static String type(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "i32";
+            case BOOLEAN -> "bool";
+            case STRING -> "String";
+            case VOID -> "V";
+            case ARRAYREF -> "array." + type(((ArrayType) type).getElementType());
+            default -> ((ClassType) type).getName();
+        };
+    }
+}
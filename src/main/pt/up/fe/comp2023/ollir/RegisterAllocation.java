@@ -0,0 +1,60 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class RegisterAllocation {
+
+    private final Method method;
+    private final int maxRegisters;
+    private int requiredRegisters;
+
+    // maxRegisters == 0 asks for the minimum number of registers
+    public RegisterAllocation(Method method, int maxRegisters) {
+        this.method = method;
+        this.maxRegisters = maxRegisters;
+        this.requiredRegisters = 0;
+    }
+
+    public boolean allocate() {
+        // 'this' and the parameters keep the registers fixed by the calling convention
+        int firstRegister = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+
+        List<String> locals = new ArrayList<>();
+        for (Map.Entry<String, Descriptor> entry : method.getVarTable().entrySet()) {
+            if (entry.getValue().getScope() == VarScope.LOCAL && !entry.getKey().equals("this")) {
+                locals.add(entry.getKey());
+            }
+        }
+
+        LivenessAnalysis liveness = new LivenessAnalysis(method);
+        liveness.analyse();
+        InterferenceGraph graph = InterferenceGraph.build(locals, method.getInstructions(), liveness);
+
+        Map<String, Integer> colors = null;
+        int numColors = 0;
+        while (colors == null) {
+            colors = graph.color(numColors);
+            if (colors == null) numColors++;
+        }
+
+        requiredRegisters = firstRegister + numColors;
+        if (maxRegisters > 0 && requiredRegisters > maxRegisters) {
+            return false;
+        }
+
+        for (Map.Entry<String, Integer> color : colors.entrySet()) {
+            method.getVarTable().get(color.getKey()).setVirtualReg(firstRegister + color.getValue());
+        }
+        return true;
+    }
+
+    public int getRequiredRegisters() {
+        return requiredRegisters;
+    }
+}
@@ -4,6 +4,7 @@ import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.CompilerStats;
 
 import java.util.ArrayList;
 
@@ -16,9 +17,9 @@ public class JmmAnalysisImpl implements JmmAnalysis {
         SymbolTableImpl symbolTable = new SymbolTableImpl();
         ArrayList <Report> reports = new ArrayList<>();
         TableVisitor tbv = new TableVisitor();
-        tbv.visit(jmmParserResult.getRootNode(), symbolTable);
-        SemanticTableVisitor smtv = new SemanticTableVisitor(tbv.getMethods());
-        smtv.visit(jmmParserResult.getRootNode(), symbolTable);
+        CompilerStats.measure("symbol table", () -> tbv.visit(jmmParserResult.getRootNode(), symbolTable));
+        SemanticTableVisitor smtv = new SemanticTableVisitor(tbv);
+        CompilerStats.measure("semantic analysis", () -> smtv.visit(jmmParserResult.getRootNode(), symbolTable));
         reports = smtv.getReports();
 
         return new JmmSemanticsResult(jmmParserResult, symbolTable, reports);
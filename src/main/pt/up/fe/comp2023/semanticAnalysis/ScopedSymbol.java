@@ -0,0 +1,36 @@
+package pt.up.fe.comp2023.semanticAnalysis;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * Variable found by SymbolTableImpl.lookup, with the scope it was declared in.
+ */
+public class ScopedSymbol {
+
+    public enum Kind { LOCAL, PARAMETER, FIELD }
+
+    private final Symbol symbol;
+    private final Kind kind;
+    private final int parameterIndex;
+
+    public ScopedSymbol(Symbol symbol, Kind kind, int parameterIndex) {
+        this.symbol = symbol;
+        this.kind = kind;
+        this.parameterIndex = parameterIndex;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Position in the method's parameter list, -1 for locals and fields
+    public int getParameterIndex() {
+        return parameterIndex;
+    }
+
+    public boolean isField() { return kind == Kind.FIELD; }
+}
@@ -9,7 +9,6 @@ import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.function.BiFunction;
@@ -22,27 +21,28 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
     private String mainClass;
     private String extension;
     public ArrayList<String> context;
-    private HashMap <String, ArrayList<Symbol>> vars;
+    private HashMap <String, HashMap<String, Symbol>> vars;
     private ArrayList<Report> reports;
 
-    public SemanticTableVisitor(HashMap<String, Method> meths) {
-        imports = new ArrayList<>();
-        classes = new ArrayList<>();
+    /**
+     * Checks the method bodies against the declarations TableVisitor already collected. Only the scopes of the
+     * methods are built again, as their declarations are visited, so that a local can't be used before it is
+     * declared.
+     */
+    public SemanticTableVisitor(TableVisitor declarations) {
+        imports = declarations.getImports();
+        classes = declarations.classes;
+        methods = declarations.getMethods();
+        mainClass = declarations.getMainClass();
+        extension = declarations.getExtension();
         context = new ArrayList<>();
         reports = new ArrayList<>();
-        extension = "";
-        mainClass = "";
-        vars = new HashMap<String, ArrayList<Symbol>>();
-        methods = meths;
-        classes.add("int");
-        classes.add("String");
-        classes.add("boolean");
+        vars = new HashMap<>(declarations.getScopes());
     }
 
     @Override
     protected void buildVisitor() {
         addVisit("Program", this::visitProgram);
-        addVisit("ImportDeclaration", this::visitImport);
         addVisit("ClassDeclaration", this::visitClassDeclaration);
         addVisit("Method", this::visitMethod);
         addVisit("MainMethod", this::visitMainMethod);
@@ -87,36 +87,18 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
 
     private Void visitProgram(JmmNode jmmNode, SymbolTableImpl table) {
         context.add("global");
-        vars.put("global", new ArrayList<>());
         for (JmmNode child: jmmNode.getChildren()) {
             visit(child);
         }
         return null;
     }
 
-    private Void visitImport(JmmNode impNode, SymbolTableImpl table) {
-        var names = (List<String>) impNode.getObject("names");
-
-        imports.add(names.get(names.size() - 1));
-
-        return null;
-    }
-
     private Void visitClassDeclaration(JmmNode jmmNode, SymbolTableImpl table) {
-        ArrayList<String> valuesList = (ArrayList<String>) jmmNode.getObject("names");
-        String className = valuesList.get(0);
-        classes.add(valuesList.get(0));
-        mainClass = className;
-        if(valuesList.size() > 1) {
-            extension = valuesList.get(1);
-            if(!imports.contains(extension)){
-                addSemanticReport(jmmNode, "Class undeclared in extend: " + extension);
-                return null;
-            }
+        if(!extension.equals("") && !imports.contains(extension)){
+            addSemanticReport(jmmNode, "Class undeclared in extend: " + extension);
+            return null;
         }
-        context.add(className);
-        vars.put(className, new ArrayList<>());
-        vars.get(className).add(new Symbol(new Type(className, false), "this"));
+        context.add(mainClass);
         visitAllChildren(jmmNode, table);
         context.remove(context.size() - 1);
         return null;
@@ -124,11 +106,11 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
 
     private Void visitMethod(JmmNode jmmNode, SymbolTableImpl table) {
         String methodName = jmmNode.get("name");
-        Type returnType = getType(jmmNode);
+        Type returnType = methods.get(methodName).getReturnType();
         List<Symbol> parameters = new ArrayList<>();
         List<Symbol> variables = new ArrayList<>();
         context.add(methodName);
-        vars.put(methodName, new ArrayList<>());
+        vars.put(methodName, new HashMap<>());
 
         for (JmmNode child: jmmNode.getChildren()) {
             if (child.getKind().equals("Parameter")) {
@@ -157,7 +139,7 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         List<Symbol> parameters = new ArrayList<>();
         List<Symbol> variables = new ArrayList<>();
         context.add(methodName);
-        vars.put(methodName, new ArrayList<>());
+        vars.put(methodName, new HashMap<>());
 
         for (JmmNode child: jmmNode.getChildren()) {
             if (child.getKind().equals("Parameter")) {
@@ -364,7 +346,21 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         return null;
     }
 
+    /**
+     * Type of a node, inferred the first time it is asked for and then kept in the node's "type" object attribute.
+     * The checks ask for the types of the same operands several times, and nested expressions would otherwise be
+     * typed again at every level.
+     */
     private Type getType(JmmNode jmmNode) {
+        var cached = jmmNode.getOptionalObject("type");
+        if(cached.isPresent())
+            return (Type) cached.get();
+        Type type = inferType(jmmNode);
+        jmmNode.putObject("type", type);
+        return type;
+    }
+
+    private Type inferType(JmmNode jmmNode) {
         if(jmmNode.getKind().equals("VarDeclaration")){
             Type type = new Type(jmmNode.getJmmChild(0).get("value"),
                     jmmNode.getJmmChild(0).hasAttribute("isArray") &&
@@ -375,13 +371,11 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
             return type;
 
         }
-        if(jmmNode.hasAttribute("value") && getVarType(jmmNode, "value") != null){
-            return new Type(getVarType(jmmNode, "value").getName(),
-                    getVarType(jmmNode, "value").isArray() && !jmmNode.getKind().equals("ArrayAccess"));
-        }
-        if(jmmNode.hasAttribute("name") && getVarType(jmmNode, "name") != null)
-            return new Type(getVarType(jmmNode, "name").getName(),
-                    getVarType(jmmNode, "name").isArray() && !jmmNode.getKind().equals("ArrayAccess"));
+        Type varType = jmmNode.hasAttribute("value") ? getVarType(jmmNode, "value") : null;
+        if(varType == null && jmmNode.hasAttribute("name"))
+            varType = getVarType(jmmNode, "name");
+        if(varType != null)
+            return new Type(varType.getName(), varType.isArray() && !jmmNode.getKind().equals("ArrayAccess"));
         String type = "";
         boolean isArray = false;
         if (jmmNode.getKind().contains("Type")) {
@@ -423,11 +417,11 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
     }
 
     private Type getVarType(JmmNode jmmNode, String getValue) {
+        String name = jmmNode.get(getValue);
         for (int i = context.size() - 1; i >= 0; i--) {
-            for(Symbol var : vars.get(context.get(i))) {
-                if(var.getName().equals(jmmNode.get(getValue))){
-                    return var.getType();
-                }
+            Symbol var = vars.get(context.get(i)).get(name);
+            if(var != null){
+                return var.getType();
             }
         }
         return null;
@@ -439,7 +433,7 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         if(!classes.contains(nodeType.getName()) && !imports.contains(nodeType.getName())){
             addSemanticReport(jmmNode, "Unknown Type: " + nodeType.getName());
         } else {
-            this.vars.get(context.get(context.size() - 1)).add(new Symbol(nodeType, nodeName));
+            this.vars.get(context.get(context.size() - 1)).putIfAbsent(nodeName, new Symbol(nodeType, nodeName));
         }
         return new Symbol(nodeType, nodeName);
     }
@@ -456,26 +450,22 @@ public class SemanticTableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
                 break;
             }
         }
-        Collections.reverse(context);
-        for(String scope : context){
-            for(Symbol var : vars.get(scope)) {
-                if(var.getName().equals(jmmNode.get(getString))){
-                    if(var.getName().equals("this") && isStatic){
-                        addSemanticReport(jmmNode, "this used in static method: " + scope);
-                        Collections.reverse(context);
-                        return false;
-                    } else if(scope.equals(mainClass) && isStatic){
-                        addSemanticReport(jmmNode, "Class field modified in static method: " + var.getName());
-                        Collections.reverse(context);
-                        return false;
-                    }
-                    Collections.reverse(context);
-                    return true;
+        String name = jmmNode.get(getString);
+        for (int i = context.size() - 1; i >= 0; i--) {
+            String scope = context.get(i);
+            Symbol var = vars.get(scope).get(name);
+            if(var != null){
+                if(var.getName().equals("this") && isStatic){
+                    addSemanticReport(jmmNode, "this used in static method: " + scope);
+                    return false;
+                } else if(scope.equals(mainClass) && isStatic){
+                    addSemanticReport(jmmNode, "Class field modified in static method: " + var.getName());
+                    return false;
                 }
+                return true;
             }
         }
-        addSemanticReport(jmmNode, "Variable not declared: " + jmmNode.get(getString));
-        Collections.reverse(context);
+        addSemanticReport(jmmNode, "Variable not declared: " + name);
         return false;
     }
 
@@ -16,6 +16,9 @@ public class SymbolTableImpl implements SymbolTable {
     private String className = null;
     private String superClass = null;
     private final List<Symbol> fields = new ArrayList<>();
+    // name -> variable, so that looking up an identifier does not scan the lists above
+    private final Map<String, Map<String, ScopedSymbol>> methodScopes = new HashMap<>();
+    private final Map<String, ScopedSymbol> fieldScope = new HashMap<>();
 
     @Override
     public List<String> getImports() {
@@ -51,6 +54,7 @@ public class SymbolTableImpl implements SymbolTable {
 
     public void addField(Symbol field) {
         fields.add(field);
+        fieldScope.putIfAbsent(field.getName(), new ScopedSymbol(field, ScopedSymbol.Kind.FIELD, -1));
     }
 
     @Override
@@ -61,6 +65,24 @@ public class SymbolTableImpl implements SymbolTable {
     public void addMethod(String methodName, Type returnType, List<Symbol> parameters,
                           List<Symbol> variables, boolean isStatic) {
         methods.put(methodName, new Method(returnType, parameters, variables, isStatic));
+
+        // locals are looked up before parameters, and the first declaration of a name wins
+        Map<String, ScopedSymbol> scope = new HashMap<>();
+        for (Symbol variable : variables) {
+            scope.putIfAbsent(variable.getName(), new ScopedSymbol(variable, ScopedSymbol.Kind.LOCAL, -1));
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            scope.putIfAbsent(parameters.get(i).getName(), new ScopedSymbol(parameters.get(i), ScopedSymbol.Kind.PARAMETER, i));
+        }
+        methodScopes.put(methodName, scope);
+    }
+
+    /**
+     * Local variable, parameter or field that a name refers to inside a method, null when there is none.
+     */
+    public ScopedSymbol lookup(String methodName, String name) {
+        ScopedSymbol variable = methodScopes.getOrDefault(methodName, Map.of()).get(name);
+        return variable != null ? variable : fieldScope.get(name);
     }
 
     private static String getTypeSignature(Type type) {
@@ -21,7 +21,7 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
     private String mainClass;
     private String extension;
     public ArrayList<String> context;
-    private HashMap <String, ArrayList<Symbol>> vars;
+    private HashMap <String, HashMap<String, Symbol>> vars;
 
     public TableVisitor() {
         imports = new ArrayList<>();
@@ -29,7 +29,7 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         context = new ArrayList<>();
         extension = "";
         mainClass = "";
-        vars = new HashMap<String, ArrayList<Symbol>>();
+        vars = new HashMap<String, HashMap<String, Symbol>>();
         methods = new HashMap<String, Method>();
         classes.add("int");
         classes.add("String");
@@ -47,7 +47,7 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
 
     private Void visitProgram(JmmNode jmmNode, SymbolTableImpl table) {
         context.add("global");
-        vars.put("global", new ArrayList<>());
+        vars.put("global", new HashMap<>());
         for (JmmNode child: jmmNode.getChildren()) {
             visit(child, table);
         }
@@ -76,8 +76,8 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
             extension = valuesList.get(1);
         }
         context.add(className);
-        vars.put(className, new ArrayList<>());
-        vars.get(className).add(new Symbol(new Type(className, false), "this"));
+        vars.put(className, new HashMap<>());
+        vars.get(className).put("this", new Symbol(new Type(className, false), "this"));
         for (JmmNode child: jmmNode.getChildren()) {
             if (child.getKind().equals("VarDeclaration")) {
                 table.addField(getSymbol(child));
@@ -95,7 +95,7 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         List<Symbol> parameters = new ArrayList<>();
         List<Symbol> variables = new ArrayList<>();
         context.add(methodName);
-        vars.put(methodName, new ArrayList<>());
+        vars.put(methodName, new HashMap<>());
 
         for (JmmNode child: jmmNode.getChildren()) {
             if (child.getKind().equals("Parameter")) {
@@ -119,7 +119,7 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         List<Symbol> parameters = new ArrayList<>();
         List<Symbol> variables = new ArrayList<>();
         context.add(methodName);
-        vars.put(methodName, new ArrayList<>());
+        vars.put(methodName, new HashMap<>());
 
         for (JmmNode child: jmmNode.getChildren()) {
             if (child.getKind().equals("Parameter")) {
@@ -138,13 +138,18 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
     }
 
     private Type getType(JmmNode jmmNode) {
-        if(jmmNode.hasAttribute("value") && getVarType(jmmNode, "value") != null){
-            return new Type(getVarType(jmmNode, "value").getName(),
-                    getVarType(jmmNode, "value").isArray() && !jmmNode.getKind().equals("ArrayAccess"));
+        // a declaration has the type written in it, even when a field uses the same name
+        if(jmmNode.getKind().equals("VarDeclaration") || jmmNode.getKind().equals("Parameter")
+                || jmmNode.getKind().equals("Method")){
+            JmmNode typeNode = jmmNode.getJmmChild(0);
+            return new Type(typeNode.get("value"),
+                    typeNode.hasAttribute("isArray") && typeNode.get("isArray").equals("true"));
         }
-        if(jmmNode.hasAttribute("name") && getVarType(jmmNode, "name") != null)
-            return new Type(getVarType(jmmNode, "name").getName(),
-                    getVarType(jmmNode, "name").isArray() && !jmmNode.getKind().equals("ArrayAccess"));
+        Type varType = jmmNode.hasAttribute("value") ? getVarType(jmmNode, "value") : null;
+        if(varType == null && jmmNode.hasAttribute("name"))
+            varType = getVarType(jmmNode, "name");
+        if(varType != null)
+            return new Type(varType.getName(), varType.isArray() && !jmmNode.getKind().equals("ArrayAccess"));
         String type = "";
         boolean isArray = false;
         if (jmmNode.getKind().contains("Type")) {
@@ -183,11 +188,11 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
     }
 
     private Type getVarType(JmmNode jmmNode, String getValue) {
+        String name = jmmNode.get(getValue);
         for(String scope : context){
-            for(Symbol var : vars.get(scope)) {
-                if(var.getName().equals(jmmNode.get(getValue)))
-                    return var.getType();
-            }
+            Symbol var = vars.get(scope).get(name);
+            if(var != null)
+                return var.getType();
         }
         return null;
     }
@@ -196,17 +201,16 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
         Type nodeType = getType(jmmNode);
         String nodeName = jmmNode.get("value");
         if(classes.contains(nodeType.getName()) || imports.contains(nodeType.getName())){
-            this.vars.get(context.get(context.size() - 1)).add(new Symbol(nodeType, nodeName));
+            this.vars.get(context.get(context.size() - 1)).putIfAbsent(nodeName, new Symbol(nodeType, nodeName));
         }
         return new Symbol(nodeType, nodeName);
     }
 
     private boolean existsVar(JmmNode jmmNode, String getString) {
+        String name = jmmNode.get(getString);
         for(String scope : context){
-            for(Symbol var : vars.get(scope)) {
-                if(var.getName().equals(jmmNode.get(getString)))
-                    return true;
-            }
+            if(vars.get(scope).containsKey(name))
+                return true;
         }
         return false;
     }
@@ -219,4 +223,21 @@ public class TableVisitor extends AJmmVisitor<SymbolTableImpl, Void> {
     public HashMap<String, Method> getMethods() {
         return methods;
     }
+
+    public List<String> getImports() {
+        return imports;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // Global and class scopes, and the parameters and locals of every method
+    public HashMap<String, HashMap<String, Symbol>> getScopes() {
+        return vars;
+    }
 }
@@ -0,0 +1,90 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.BatchCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test batch mode, compiling several files on a pool of workers.
+ */
+public class BatchCompilerTest {
+
+    private static final String[] FIXTURES = {
+            "cpf/4_jasmin/control_flow/SimpleWhileStat.jmm",
+            "cpf/2_semantic_analysis/lookup/VarLookup_Field_Main_Fail.jmm",
+            "cpf/4_jasmin/arithmetic/Arithmetic_and.jmm"
+    };
+
+    // Config of the launcher for -j=<threads> -out=<outputDir>
+    static Map<String, String> getConfig(int threads, File outputDir) {
+        Map<String, String> config = new HashMap<>();
+        config.put("inputFile", "");
+        config.put("optimize", "false");
+        config.put("registerAllocation", "-1");
+        config.put("debug", "false");
+        config.put("threads", String.valueOf(threads));
+        config.put("outputDir", outputDir.getPath());
+        config.put("stats", "");
+        config.put("backend", "jasmin");
+        return config;
+    }
+
+    // Copies the fixtures to a folder of their own, in the order given
+    static List<File> copyFixtures(File folder, String... fixtures) {
+        List<File> inputFiles = new ArrayList<>();
+        for (String fixture : fixtures) {
+            File inputFile = new File(folder, new File(fixture).getName());
+            SpecsIo.write(inputFile, SpecsIo.getResource("pt/up/fe/comp/" + fixture));
+            inputFiles.add(inputFile);
+        }
+        return inputFiles;
+    }
+
+    /**
+     * Test if a failing file is counted without stopping the others, whose results are printed in input order and
+     * whose Jasmin and class files are written to the output folder
+     */
+    @Test
+    public void failingFileDoesNotStopTheOthers() {
+        File inputDir = SpecsIo.getTempFolder("batch_input");
+        File outputDir = SpecsIo.getTempFolder("batch_output");
+        SpecsIo.deleteFolderContents(outputDir);
+        List<File> inputFiles = copyFixtures(inputDir, FIXTURES);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        boolean success;
+        System.setOut(new PrintStream(output, true));
+        try {
+            success = new BatchCompiler(getConfig(3, outputDir)).compile(inputFiles);
+        } finally {
+            System.setOut(stdout);
+        }
+
+        assertFalse(success);
+        List<String> results = output.toString().lines()
+                .filter(line -> line.startsWith("[OK]") || line.startsWith("[FAILED]"))
+                .toList();
+        assertEquals(List.of("[OK] " + inputFiles.get(0), "[FAILED] " + inputFiles.get(1),
+                "[OK] " + inputFiles.get(2)), results);
+        assertTrue(output.toString(), output.toString().contains("Compiled 3 files, 1 failed"));
+
+        for (String className : List.of("SimpleWhileStat", "Arithmetic_and")) {
+            assertTrue(className + ".j", new File(outputDir, className + ".j").isFile());
+            assertTrue(className + ".class", new File(outputDir, className + ".class").isFile());
+        }
+        assertFalse(new File(outputDir, "A.class").exists());
+    }
+}
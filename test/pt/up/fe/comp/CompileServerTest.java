@@ -0,0 +1,100 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.CompileClient;
+import pt.up.fe.comp2023.CompileServer;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the compile daemon, through the client the launcher runs with -connect.
+ */
+public class CompileServerTest {
+
+    // Connects until the daemon accepts, then hangs up, which the daemon takes as a client with no requests
+    private static void waitForServer(File socket) throws InterruptedException {
+        while (true) {
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket.toPath()))) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Test if a good and a bad file compiled through the daemon get back their reports and their OLLIR and Jasmin
+     * code, and if -stop shuts the daemon down
+     */
+    @Test(timeout = 60000)
+    public void compileThroughDaemonAndStop() throws Exception {
+        File folder = SpecsIo.getTempFolder("daemon");
+        SpecsIo.deleteFolderContents(folder);
+        File outputDir = new File(folder, "out");
+        File socket = new File(folder, "jmm.sock");
+        List<File> inputFiles = BatchCompilerTest.copyFixtures(folder,
+                "cpf/4_jasmin/arithmetic/Arithmetic_and.jmm",
+                "cpf/2_semantic_analysis/lookup/VarLookup_Field_Main_Fail.jmm");
+
+        Map<String, String> serverConfig = BatchCompilerTest.getConfig(2, outputDir);
+        serverConfig.put("daemon", socket.getPath());
+        Thread server = new Thread(() -> {
+            try {
+                new CompileServer(serverConfig).run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+        waitForServer(socket);
+
+        Map<String, String> clientConfig = BatchCompilerTest.getConfig(2, outputDir);
+        clientConfig.put("connect", socket.getPath());
+        clientConfig.put("debug", "true");
+        CompileClient client = new CompileClient(clientConfig);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        boolean success;
+        System.setOut(new PrintStream(output, true));
+        try {
+            success = client.compile(inputFiles);
+        } finally {
+            System.setOut(stdout);
+        }
+
+        String printed = output.toString();
+        assertFalse(printed, success);
+        List<String> lines = printed.lines().toList();
+        int good = lines.indexOf("[OK] " + inputFiles.get(0));
+        int bad = lines.indexOf("[FAILED] " + inputFiles.get(1));
+        assertTrue(printed, good >= 0 && bad > good);
+
+        // with -d the OLLIR and Jasmin code of the good file are printed after its reports
+        String goodOutput = String.join("\n", lines.subList(good, bad));
+        assertTrue(goodOutput, goodOutput.contains(".construct Arithmetic_and().V"));
+        assertTrue(goodOutput, goodOutput.contains(".class public Arithmetic_and"));
+        assertTrue(new File(outputDir, "Arithmetic_and.class").isFile());
+
+        // the bad file only gets its semantic error back, without any code
+        assertEquals(List.of("\tERROR@semantic, line 6, col 8: Class field modified in static method: a",
+                "Compiled 2 files, 1 failed"), lines.subList(bad + 1, lines.size()));
+
+        client.stop();
+        server.join(10000);
+        assertFalse(server.isAlive());
+        assertFalse(socket.exists());
+    }
+}
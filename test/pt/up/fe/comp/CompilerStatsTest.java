@@ -0,0 +1,119 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.CompilationResult;
+import pt.up.fe.comp2023.CompilerStats;
+import pt.up.fe.comp2023.JmmCompiler;
+import pt.up.fe.comp2023.StageStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the stages recorded with -stats.
+ */
+public class CompilerStatsTest {
+
+    private static List<String> getNames(StageStats stats) {
+        return stats.getChildren().stream().map(StageStats::getName).toList();
+    }
+
+    // Runs the given work with the methods of this thread lowered on a pool of two workers
+    private static <T> T withMethodWorkers(Supplier<T> work) {
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        CompilerStats.useMethodWorkers(workers);
+        try {
+            return work.get();
+        } finally {
+            CompilerStats.useMethodWorkers(null);
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Test if compiling with stats records the parse, semantic, OLLIR and Jasmin stages, with one stage for each
+     * method under the two stages that lower methods
+     */
+    @Test
+    public void compilationStagesAreRecorded() {
+        Map<String, String> config = BatchCompilerTest.getConfig(2, new File("out"));
+        config.put("stats", "stats.json");
+        String code = SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/const_prop/PropJoins.jmm");
+
+        CompilationResult result = withMethodWorkers(() -> new JmmCompiler().compile(code, config));
+
+        TestUtils.noErrors(result.getReports());
+        StageStats total = result.getStats();
+        assertEquals("total", total.getName());
+        List<String> stages = getNames(total);
+        for (String stage : List.of("parse", "symbol table", "semantic analysis", "ollir generation",
+                "jasmin generation")) {
+            assertTrue(stage + " in " + stages, stages.contains(stage));
+        }
+        assertTrue(stages.indexOf("parse") < stages.indexOf("semantic analysis"));
+        assertTrue(stages.indexOf("semantic analysis") < stages.indexOf("ollir generation"));
+        assertTrue(stages.indexOf("ollir generation") < stages.indexOf("jasmin generation"));
+
+        List<String> methods = List.of("agree", "disagree", "loop", "decided", "main");
+        StageStats ollir = total.getChildren().get(stages.indexOf("ollir generation"));
+        StageStats jasmin = total.getChildren().get(stages.indexOf("jasmin generation"));
+        assertEquals(methods, getNames(ollir));
+        assertTrue(getNames(jasmin).containsAll(methods));
+        for (StageStats stage : total.getChildren()) {
+            assertTrue(stage.getName(), stage.getWallNanos() > 0);
+            assertTrue(stage.getName(), stage.getWallNanos() <= total.getWallNanos());
+        }
+    }
+
+    /**
+     * Test if the items measured on the method workers are added up under the stage open on the calling thread, in
+     * item order, with an item measured twice holding both measurements
+     */
+    @Test
+    public void measureEachAddsUpTheWorkerTimes() {
+        long work = 30_000_000;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+
+        CompilerStats stats = CompilerStats.start();
+        withMethodWorkers(() -> {
+            CompilerStats.measure("methods", () -> CompilerStats.measureEach(List.of("a", "b", "a"), name -> name,
+                    name -> {
+                        workerThreads.add(Thread.currentThread());
+                        // spends the CPU time the stage is expected to record
+                        long end = threads.getCurrentThreadCpuTime() + work;
+                        while (threads.getCurrentThreadCpuTime() < end) {
+                            Thread.onSpinWait();
+                        }
+                        return name;
+                    }));
+            return null;
+        });
+        StageStats total = stats.stop();
+
+        assertFalse(workerThreads.contains(Thread.currentThread()));
+        StageStats methods = total.getChildren().get(0);
+        assertEquals("methods", methods.getName());
+        assertEquals(List.of("a", "b"), getNames(methods));
+
+        StageStats a = methods.getChildren().get(0);
+        StageStats b = methods.getChildren().get(1);
+        assertTrue("CPU of a: " + a.getCpuNanos(), a.getCpuNanos() >= 2 * work);
+        assertTrue("CPU of b: " + b.getCpuNanos(), b.getCpuNanos() >= work);
+        // the calling thread only waits, the CPU time of the items was spent on the workers
+        assertTrue(a.getCpuNanos() + b.getCpuNanos() > methods.getCpuNanos());
+    }
+}
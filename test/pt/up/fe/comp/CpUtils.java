@@ -19,6 +19,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -517,6 +518,50 @@ public class CpUtils {
 		}
     }
 
+    /**
+     * Verifies that both programs print the same, as code compiled with and without an optimization must
+     */
+    public static void assertSameOutput(JasminResult expected, JasminResult actual) {
+        var expectedOutput = SpecsStrings.normalizeFileContents(expected.run(), true);
+        assertEquals("Output of the optimized code", expectedOutput,
+                SpecsStrings.normalizeFileContents(actual.run(), true), actual);
+    }
+
+    /**
+     * Returns the code of a method from the first label that a later jump goes back to, up to the last jump back to
+     * it, which is the outermost loop of the method
+     */
+    public static String getJasminLoop(JasminResult jasminResult, String methodName) {
+        var lines = getJasminMethod(jasminResult, methodName).split("\n");
+        var labels = new HashMap<String, Integer>();
+        int start = -1;
+        int end = -1;
+
+        for (int i = 0; i < lines.length; i++) {
+            var line = lines[i].strip();
+            if (line.endsWith(":")) {
+                labels.put(line.substring(0, line.length() - 1), i);
+                continue;
+            }
+
+            var words = line.split("\\s+");
+            if (words.length != 2 || !(words[0].startsWith("if") || words[0].equals("goto"))) {
+                continue;
+            }
+            Integer target = labels.get(words[1]);
+            if (target == null || (start != -1 && target > start)) {
+                continue;
+            }
+            if (target != start) {
+                start = target;
+            }
+            end = i;
+        }
+
+        assertTrue("Could not find a loop in method '" + methodName + "'", start != -1, jasminResult);
+        return String.join("\n", Arrays.asList(lines).subList(start, end + 1));
+    }
+
     private static final Pattern LIMIT_LOCALS = Pattern.compile("\\.limit\\s+locals\\s+([0-9]+)\\s+");
 
     private static final Pattern LIMIT_STACK = Pattern.compile("\\.limit\\s+stack\\s+([0-9]+)\\s+");
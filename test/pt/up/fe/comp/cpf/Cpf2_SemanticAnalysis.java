@@ -17,10 +17,18 @@ import org.junit.Test;
 import pt.up.fe.comp.CpUtils;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.specs.util.SpecsIo;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class Cpf2_SemanticAnalysis {
 
@@ -32,6 +40,37 @@ public class Cpf2_SemanticAnalysis {
         return TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp/cpf/2_semantic_analysis/" + filename));
     }
 
+    // Class whose method assigns an int and a boolean expression nested to the given depth, with 'first' deepest
+    static String getNestedExpressions(int depth, String first) {
+        StringBuilder arithmetic = new StringBuilder(first);
+        StringBuilder condition = new StringBuilder("b");
+        for (int i = 0; i < depth; i++) {
+            arithmetic.append(i % 2 == 0 ? " + arr[a]" : " - arr.length");
+            condition.append(i % 2 == 0 ? " && a < a + 1" : " && !b");
+        }
+        return "class Nested {\n" +
+                "    public int compute(int a, boolean b, int[] arr) {\n" +
+                "        int x;\n" +
+                "        boolean y;\n" +
+                "        x = " + arithmetic + ";\n" +
+                "        y = " + condition + ";\n" +
+                "        return x;\n" +
+                "    }\n" +
+                "    public static void main(String[] args) {\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    // Type of an expression inferred from its children every time, as the analysis did before it kept the types
+    static Type inferType(JmmNode node, Map<String, Type> variables) {
+        return switch (node.getKind()) {
+            case "Integer", "BinaryOp", "Length", "ArrayAccess" -> new Type("int", false);
+            case "Boolean", "BoolOp", "Denial" -> new Type("boolean", false);
+            case "Identifier" -> variables.get(node.get("value"));
+            default -> throw new IllegalArgumentException("Unexpected expression " + node.getKind());
+        };
+    }
+
     static JmmSemanticsResult test(String filename, boolean fail) {
         var semantics = getSemanticsResult(filename);
         if (fail) {
@@ -123,5 +162,44 @@ public class Cpf2_SemanticAnalysis {
         CpUtils.assertEquals("Lookup of field", "10", jasminResult.run().trim(), jasminResult);
     }
 
+    /**
+     * Test if the analysis keeps the type of each operand of a deeply nested expression on its node, and if the kept
+     * types are the ones inferring them again from the children gives.
+     */
+    @Test
+    public void section3_Typing_NestedExpressionTypesAreKept() {
+        var semantics = TestUtils.analyse(getNestedExpressions(200, "a"));
+        TestUtils.noErrors(semantics.getReports());
+        var variables = Map.of("a", new Type("int", false), "b", new Type("boolean", false),
+                "arr", new Type("int", true));
+
+        var operators = new ArrayList<JmmNode>();
+        var pending = new ArrayDeque<JmmNode>(List.of(semantics.getRootNode()));
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            if (node.getKind().equals("BinaryOp") || node.getKind().equals("BoolOp")) operators.add(node);
+            pending.addAll(node.getChildren());
+        }
+        assertEquals(600, operators.size());
 
+        for (var operator : operators) {
+            for (var operand : operator.getChildren()) {
+                var kept = operand.getOptionalObject("type");
+                assertTrue("Expected a type kept on " + operand.getKind(), kept.isPresent());
+                assertEquals(inferType(operand, variables), kept.get());
+            }
+        }
+    }
+
+    /**
+     * Test if a wrong operand at the bottom of a deeply nested expression is still reported.
+     */
+    @Test
+    public void section3_Typing_NestedWrongOperandIsReported() {
+        var semantics = TestUtils.analyse(getNestedExpressions(200, "b"));
+
+        TestUtils.mustFail(semantics.getReports());
+        assertTrue(semantics.getReports().stream()
+                .anyMatch(report -> report.getMessage().equals("Int operation with wrong type: boolean")));
+    }
 }
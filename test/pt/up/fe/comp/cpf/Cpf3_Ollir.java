@@ -24,6 +24,21 @@ import java.util.stream.Collectors;
 
 public class Cpf3_Ollir {
 
+    // Class whose method returns a + (a * (a + (a * ... a))), with the given number of operators
+    static String getNestedArithmetic(int depth) {
+        StringBuilder expression = new StringBuilder("a");
+        for (int i = 0; i < depth; i++) {
+            expression.insert(0, i % 2 == 0 ? "a + (" : "a * (").append(")");
+        }
+        return "class Nested {\n" +
+                "    public int compute(int a) {\n" +
+                "        return " + expression + ";\n" +
+                "    }\n" +
+                "    public static void main(String[] args) {\n" +
+                "    }\n" +
+                "}\n";
+    }
+
     static OllirResult getOllirResult(String filename) {
         return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/" + filename));
     }
@@ -100,6 +115,17 @@ public class Cpf3_Ollir {
     }
 
 
+    /*checks if while conditions are computed again on every iteration, and if conditions that are not comparisons
+    leave the loop once false*/
+    @Test(timeout = 30000)
+    public void section3_ControlFlow_While_ConditionEveryIteration() {
+
+        var result = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/control_flow/WhileConditions.jmm"));
+
+        CpUtils.runJasmin(result, "Result: 54");
+    }
+
+
     /*checks if an array is correctly initialized*/
     @Test
     public void section4_Arrays_Init_Array() {
@@ -159,4 +185,22 @@ public class Cpf3_Ollir {
         CpUtils.assertEquals("Number of array reads", 6, numArrayReads, result);
     }
 
+    /*checks if each operator of a nested expression adds one instruction and one temporary, however deep it is*/
+    @Test
+    public void section5_Scaling_NestedArithmeticIsLinear() {
+        for (int depth : new int[]{25, 50, 100}) {
+            var result = TestUtils.optimize(getNestedArithmetic(depth));
+            var method = CpUtils.getMethod(result, "compute");
+
+            var temps = method.getInstructions().stream()
+                    .filter(instruction -> instruction instanceof AssignInstruction)
+                    .map(assign -> ((Operand) ((AssignInstruction) assign).getDest()).getName())
+                    .filter(name -> name.matches("t\\d+"))
+                    .distinct().count();
+
+            CpUtils.assertEquals("Temporaries for " + depth + " operators", depth, temps, result);
+            CpUtils.assertEquals("Instructions for " + depth + " operators", depth + 1,
+                    method.getInstructions().size(), result);
+        }
+    }
 }
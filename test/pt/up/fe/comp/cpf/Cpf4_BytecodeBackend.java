@@ -0,0 +1,154 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.bytecode.BytecodeBackend;
+import pt.up.fe.comp2023.bytecode.BytecodeResult;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsSystem;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class files written by {@link BytecodeBackend} must run as the ones assembled from the Jasmin code of the same
+ * class unit. Every fixture with a main method is compiled by both backends and their outputs are compared.
+ */
+public class Cpf4_BytecodeBackend {
+
+    private static final List<String> FIXTURES = Arrays.asList(
+            "3_ollir/arithmetic/Arithmetic_and.jmm",
+            "3_ollir/arithmetic/Arithmetic_less.jmm",
+            "3_ollir/arrays/ArrayInit.jmm",
+            "3_ollir/arrays/ComplexArrayAccess.jmm",
+            "3_ollir/control_flow/WhileConditions.jmm",
+            "4_bytecode/frames/LoopJoins.jmm",
+            "4_jasmin/arithmetic/Arithmetic_and.jmm",
+            "4_jasmin/arithmetic/Arithmetic_less.jmm",
+            "4_jasmin/arrays/ArrayAccess.jmm",
+            "4_jasmin/arrays/ArrayAsArg.jmm",
+            "4_jasmin/arrays/ArrayInit.jmm",
+            "4_jasmin/arrays/ComplexArrayAccess.jmm",
+            "4_jasmin/calls/ConditionArgsFuncCall.jmm",
+            "4_jasmin/control_flow/IfWhileNested.jmm",
+            "4_jasmin/control_flow/SimpleControlFlow.jmm",
+            "4_jasmin/control_flow/SimpleIfElseNot.jmm",
+            "4_jasmin/control_flow/SimpleIfElseStat.jmm",
+            "4_jasmin/control_flow/SimpleWhileStat.jmm",
+            "4_jasmin/control_flow/SwitchStat.jmm",
+            "5_optimizations/const_prop/PropJoins.jmm",
+            "5_optimizations/const_prop/PropNegation.jmm",
+            "5_optimizations/const_prop/PropSimple.jmm",
+            "5_optimizations/const_prop/PropWithLoop.jmm",
+            "5_optimizations/cse/Reassigned.jmm",
+            "5_optimizations/cse/Repeated.jmm",
+            "5_optimizations/dead_code/DeadBranches.jmm",
+            "5_optimizations/dead_code/DeadStores.jmm",
+            "5_optimizations/induction/Scaled.jmm",
+            "5_optimizations/inst_selection/InstSelection_if_lt.jmm",
+            "5_optimizations/inst_selection/InstSelection_iinc.jmm",
+            "5_optimizations/licm/Invariant.jmm",
+            "5_optimizations/peephole/Conditions.jmm",
+            "5_optimizations/peephole/Loop.jmm",
+            "5_optimizations/reg_alloc/regalloc.jmm",
+            "5_optimizations/simplify/Identities.jmm");
+
+    private static ProcessOutputAsString run(BytecodeResult result) {
+        TestUtils.noErrors(result.getReports());
+        File outputDir = SpecsIo.getTempFolder("bytecode_" + result.getClassName());
+        try {
+            result.write(outputDir);
+            String classpath = outputDir.getAbsolutePath() + File.pathSeparator + TestUtils.getLibsClasspath();
+            return SpecsSystem.runProcess(Arrays.asList("java", "-cp", classpath, result.getClassName()),
+                    SpecsIo.getWorkingDir(), true, false);
+        } finally {
+            SpecsIo.deleteFolder(outputDir);
+        }
+    }
+
+    // Each fixture prints the same and exits the same way with both backends
+    private static void assertSameOutput(Map<String, String> config) {
+        for (String fixture : FIXTURES) {
+            String code = SpecsIo.getResource("pt/up/fe/comp/cpf/" + fixture);
+
+            JasminResult jasminResult = TestUtils.backend(code, config);
+            TestUtils.noErrors(jasminResult.getReports());
+            ProcessOutputAsString expected = jasminResult.runWithFullOutput();
+
+            OllirResult ollirResult = TestUtils.optimize(code, config);
+            TestUtils.noErrors(ollirResult.getReports());
+            ProcessOutputAsString actual = run(new BytecodeBackend().toClassFile(ollirResult));
+
+            assertEquals(fixture + " with " + config, expected.getStdOut(), actual.getStdOut());
+            assertEquals(fixture + " with " + config, expected.getStdErr(), actual.getStdErr());
+            assertEquals(fixture + " with " + config, expected.getReturnValue(), actual.getReturnValue());
+        }
+    }
+
+    /**
+     * Test if the class files run as the Jasmin ones
+     */
+    @Test
+    public void section1_SameOutput() {
+        assertSameOutput(new HashMap<>());
+    }
+
+    /**
+     * Test if the class files run as the Jasmin ones with -o
+     */
+    @Test
+    public void section2_SameOutputOptimized() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        assertSameOutput(config);
+    }
+
+    /**
+     * Test if the class files run as the Jasmin ones with -r=0
+     */
+    @Test
+    public void section3_SameOutputWithFewestRegisters() {
+        Map<String, String> config = new HashMap<>();
+        config.put("registerAllocation", "0");
+        assertSameOutput(config);
+    }
+
+    /**
+     * Test if the class files run as the Jasmin ones with -o and -r=0
+     */
+    @Test
+    public void section4_SameOutputOptimizedWithFewestRegisters() {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("registerAllocation", "0");
+        assertSameOutput(config);
+    }
+
+    /**
+     * Test if the class file of a loop whose body joins branches that assign locals of different types passes the
+     * verifier, whose frames at each join must agree with every path into it
+     */
+    @Test
+    public void section5_LoopWithBranchJoinsVerifies() {
+        String code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_bytecode/frames/LoopJoins.jmm");
+
+        for (String registers : Arrays.asList("-1", "0")) {
+            Map<String, String> config = new HashMap<>();
+            config.put("registerAllocation", registers);
+            OllirResult ollirResult = TestUtils.optimize(code, config);
+            TestUtils.noErrors(ollirResult.getReports());
+
+            ProcessOutputAsString output = run(new BytecodeBackend().toClassFile(ollirResult));
+            assertEquals("stderr with -r=" + registers, "", output.getStdErr());
+            assertEquals("Result: 173\nResult: 106\n", output.getStdOut().replace("\r\n", "\n"));
+        }
+    }
+}
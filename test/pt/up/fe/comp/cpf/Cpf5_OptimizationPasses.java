@@ -0,0 +1,325 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Optimizations beyond the ones of {@link Cpf5_Optimizations}. Each test also checks that the optimized code prints
+ * the same as the code compiled without them.
+ */
+public class Cpf5_OptimizationPasses {
+
+    static OllirResult getOllirResultOpt(String filename) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/" + filename), config);
+    }
+
+    static OllirResult getOllirResultReg(String filename, int numReg) {
+        Map<String, String> config = new HashMap<>();
+        config.put("registerAllocation", String.valueOf(numReg));
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/" + filename), config);
+    }
+
+    static JasminResult getJasminResult(String filename, Map<String, String> config) {
+        return TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/" + filename), config);
+    }
+
+    static JasminResult getJasminResult(String filename) {
+        return getJasminResult(filename, new HashMap<>());
+    }
+
+    static JasminResult getJasminResultOpt(String filename) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        return getJasminResult(filename, config);
+    }
+
+    static JasminResult getJasminResultReg(String filename, int numReg) {
+        Map<String, String> config = new HashMap<>();
+        config.put("registerAllocation", String.valueOf(numReg));
+        return getJasminResult(filename, config);
+    }
+
+    // With -o, and only the given peephole rules, none when empty
+    static JasminResult getJasminResultPeephole(String filename, String rules) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("peephole", rules);
+        return getJasminResult(filename, config);
+    }
+
+    private static int countInstructions(JasminResult result) {
+        int instructions = 0;
+        for (String line : result.getJasminCode().split("\n")) {
+            if (line.startsWith("\t") && !line.startsWith("\t.")) instructions++;
+        }
+        return instructions;
+    }
+
+    // The peephole rules leave fewer instructions than the code as it was written, which prints the same
+    private static JasminResult assertShorter(String filename) {
+        JasminResult written = getJasminResultPeephole(filename, "");
+        JasminResult optimized = getJasminResultOpt(filename);
+
+        assertTrue("Expected fewer instructions than in:\n" + written.getJasminCode() + "\ngot:\n"
+                + optimized.getJasminCode(), countInstructions(optimized) < countInstructions(written));
+        CpUtils.assertSameOutput(written, optimized);
+        return optimized;
+    }
+
+    private static int countOperations(Method method, OperationType opType) {
+        return CpUtils.getOllirNodes(method, node -> node instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == opType).size();
+    }
+
+    private static int getLimitLocals(JasminResult result, String methodName) {
+        Matcher matcher = CpUtils.getLimitLocalsRegex().matcher(CpUtils.getJasminMethod(result, methodName));
+        CpUtils.assertTrue("Expected a .limit locals directive in method '" + methodName + "'", matcher.find(), result);
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * Test if -r=0 gives a method the fewest registers its variables fit in: 'this', the parameter and one register
+     * shared by the four locals, each dead once the next one is assigned
+     */
+    @Test
+    public void section4_RegAlloc_ZeroUsesTheMinimum() {
+        JasminResult optimized = getJasminResultReg("reg_alloc/regalloc.jmm", 0);
+
+        assertEquals(3, getLimitLocals(optimized, "soManyRegisters"));
+        CpUtils.assertSameOutput(getJasminResult("reg_alloc/regalloc.jmm"), optimized);
+    }
+
+    /**
+     * Test if asking for fewer registers than a method needs is reported as an error naming the method
+     */
+    @Test
+    public void section4_RegAlloc_TooFewRegistersIsReported() {
+        OllirResult result = getOllirResultReg("reg_alloc/regalloc.jmm", 2);
+
+        TestUtils.mustFail(result);
+        assertTrue(result.getReports().stream().anyMatch(report -> report.getType() == ReportType.ERROR
+                && report.getMessage().contains("soManyRegisters")));
+    }
+
+    /**
+     * Test if negations of literals, bracketed or not, are folded and propagated
+     */
+    @Test
+    public void section5_ConstProp_NegationsAreFolded() {
+        OllirResult ollir = getOllirResultOpt("const_prop/PropNegation.jmm");
+        Method method = CpUtils.getMethod(ollir, "negate");
+
+        CpUtils.assertEquals("Negations in method negate", 0,
+                CpUtils.getOllirNodes(method, node -> node instanceof UnaryOpInstruction).size(), ollir);
+        CpUtils.assertEquals("Conditions left on variables in method negate", 0,
+                CpUtils.getOllirNodes(method, node -> node instanceof CondBranchInstruction branch
+                        && branch.getOperands().stream().anyMatch(operand -> !operand.isLiteral())).size(), ollir);
+        CpUtils.assertSameOutput(getJasminResult("const_prop/PropNegation.jmm"),
+                getJasminResultOpt("const_prop/PropNegation.jmm"));
+    }
+
+    /**
+     * Test if a constant survives a join where both branches assign it the same value, and not one where they differ
+     */
+    @Test
+    public void section5_ConstProp_JoinsKeepOnlyAgreeingConstants() {
+        OllirResult ollir = getOllirResultOpt("const_prop/PropJoins.jmm");
+
+        CpUtils.assertEquals("Multiplications in method agree", 0,
+                countOperations(CpUtils.getMethod(ollir, "agree"), OperationType.MUL), ollir);
+        CpUtils.assertHasOperation(OperationType.MUL, CpUtils.getMethod(ollir, "disagree"), ollir);
+        CpUtils.assertSameOutput(getJasminResult("const_prop/PropJoins.jmm"),
+                getJasminResultOpt("const_prop/PropJoins.jmm"));
+    }
+
+    /**
+     * Test if an assignment in a loop body kills the constant the variable had before the loop
+     */
+    @Test
+    public void section5_ConstProp_LoopBackEdgeKillsConstant() {
+        OllirResult ollir = getOllirResultOpt("const_prop/PropJoins.jmm");
+        Method method = CpUtils.getMethod(ollir, "loop");
+
+        CpUtils.assertHasOperation(OperationType.MUL, method, ollir);
+        CpUtils.assertEquals("Additions in method loop", 2, countOperations(method, OperationType.ADD), ollir);
+        CpUtils.assertSameOutput(getJasminResult("const_prop/PropJoins.jmm"),
+                getJasminResultOpt("const_prop/PropJoins.jmm"));
+    }
+
+    /**
+     * Test if a constant condition is folded and only the branch it takes decides the constants after the if
+     */
+    @Test
+    public void section5_ConstProp_ConstantConditionPicksTheBranch() {
+        OllirResult ollir = getOllirResultOpt("const_prop/PropJoins.jmm");
+        Method method = CpUtils.getMethod(ollir, "decided");
+
+        CpUtils.assertEquals("Comparisons in method decided", 0, countOperations(method, OperationType.LTH), ollir);
+        CpUtils.assertEquals("Multiplications in method decided", 0, countOperations(method, OperationType.MUL), ollir);
+        CpUtils.assertSameOutput(getJasminResult("const_prop/PropJoins.jmm"),
+                getJasminResultOpt("const_prop/PropJoins.jmm"));
+    }
+
+    /**
+     * Test if the branches of if and while statements with a constant false condition are removed
+     */
+    @Test
+    public void section6_DeadCode_ConstantConditionsLeaveOneBranch() {
+        OllirResult ollir = getOllirResultOpt("dead_code/DeadBranches.jmm");
+        Method method = CpUtils.getMethod(ollir, "pick");
+
+        CpUtils.assertEquals("Conditional branches in method pick", 0,
+                CpUtils.getOllirNodes(method, node -> node instanceof CondBranchInstruction).size(), ollir);
+        CpUtils.assertEquals("Calls of the removed branches in method pick", 0,
+                CpUtils.getOllirNodes(method, node -> node instanceof CallInstruction).size(), ollir);
+        CpUtils.assertHasOperation(OperationType.MUL, method, ollir);
+        CpUtils.assertSameOutput(getJasminResult("dead_code/DeadBranches.jmm"),
+                getJasminResultOpt("dead_code/DeadBranches.jmm"));
+    }
+
+    /**
+     * Test if a store no one reads is removed, unless computing its value calls a method or divides
+     */
+    @Test
+    public void section6_DeadCode_OnlyPureDeadStoresAreRemoved() {
+        OllirResult ollir = getOllirResultOpt("dead_code/DeadStores.jmm");
+        Method method = CpUtils.getMethod(ollir, "store");
+
+        CpUtils.assertEquals("Multiplications in method store", 0, countOperations(method, OperationType.MUL), ollir);
+        CpUtils.assertHasOperation(OperationType.DIV, method, ollir);
+        CpUtils.assertInstExists(CallInstruction.class, method, ollir);
+        CpUtils.assertSameOutput(getJasminResult("dead_code/DeadStores.jmm"),
+                getJasminResultOpt("dead_code/DeadStores.jmm"));
+    }
+
+    /**
+     * Test if the loop condition branches straight to the loop body
+     */
+    @Test
+    public void section7_Peephole_LoopConditionBranchesDirectly() {
+        JasminResult result = assertShorter("peephole/Loop.jmm");
+        CpUtils.matches(result, "WHILE_0:\\s+iload_2\\s+iload_1\\s+if_icmplt\\s+BODY_1");
+        assertFalse(result.getJasminCode().contains("TRUE0:"));
+    }
+
+    /**
+     * Test if comparisons with 0 use the single operand branches
+     */
+    @Test
+    public void section7_Peephole_ComparisonsWithZero() {
+        JasminResult result = assertShorter("peephole/Conditions.jmm");
+        CpUtils.matches(result, "iflt\\s+\\w+");
+        CpUtils.matches(result, "ifgt\\s+\\w+");
+    }
+
+    /**
+     * Test if a single rule can be picked
+     */
+    @Test
+    public void section7_Peephole_StoreLoadOnly() {
+        JasminResult written = getJasminResultPeephole("peephole/Loop.jmm", "");
+        JasminResult optimized = getJasminResultPeephole("peephole/Loop.jmm", "store_load");
+
+        assertTrue(countInstructions(optimized) < countInstructions(written));
+        assertEquals(CpUtils.countOccurences(written, "TRUE0:"), CpUtils.countOccurences(optimized, "TRUE0:"));
+        CpUtils.assertSameOutput(written, optimized);
+    }
+
+    /**
+     * Test if an unknown rule is reported and left out
+     */
+    @Test
+    public void section7_Peephole_UnknownRuleIsReported() {
+        JasminResult result = getJasminResultPeephole("peephole/Loop.jmm", "store_load,no_such_rule");
+
+        assertTrue(result.getReports().stream().anyMatch(report -> report.getType() == ReportType.WARNING
+                && report.getMessage().contains("no_such_rule")));
+        assertEquals(getJasminResultPeephole("peephole/Loop.jmm", "store_load").getJasminCode(),
+                result.getJasminCode());
+    }
+
+    /**
+     * Test if arraylength, arithmetic on values the loop does not write and fields it does not store to leave the
+     * loop
+     */
+    @Test
+    public void section8_Licm_InvariantsLeaveTheLoop() {
+        JasminResult optimized = getJasminResultOpt("licm/Invariant.jmm");
+
+        String loop = CpUtils.getJasminLoop(optimized, "sum");
+        assertFalse(loop, loop.contains("arraylength"));
+        assertFalse(loop, loop.contains("imul"));
+        assertFalse(loop, loop.contains("getfield"));
+        CpUtils.assertSameOutput(getJasminResult("licm/Invariant.jmm"), optimized);
+    }
+
+    /**
+     * Test if repeated expressions in a block are computed once
+     */
+    @Test
+    public void section9_Cse_RepeatedExpressionsAreComputedOnce() {
+        JasminResult optimized = getJasminResultOpt("cse/Repeated.jmm");
+
+        assertEquals(1, CpUtils.countOccurences(optimized, "imul"));
+        assertEquals(1, CpUtils.countOccurences(optimized, "arraylength"));
+        assertEquals(1, CpUtils.countOccurences(optimized, "getfield"));
+        CpUtils.assertSameOutput(getJasminResult("cse/Repeated.jmm"), optimized);
+    }
+
+    /**
+     * Test if a variable assigned a repeated expression keeps the value it is assigned later
+     */
+    @Test
+    public void section9_Cse_ReassignedCopyKeepsItsLaterValue() {
+        JasminResult optimized = getJasminResultOpt("cse/Reassigned.jmm");
+
+        assertEquals(1, CpUtils.countOccurences(optimized, "imul"));
+        CpUtils.assertSameOutput(getJasminResult("cse/Reassigned.jmm"), optimized);
+    }
+
+    /**
+     * Test if algebraic identities are simplified and products and quotients by powers of two become shifts
+     */
+    @Test
+    public void section10_Simplify_IdentitiesAndPowersOfTwo() {
+        JasminResult optimized = getJasminResultOpt("simplify/Identities.jmm");
+
+        String code = optimized.getJasminCode();
+        assertFalse(code, code.contains("imul"));
+        assertFalse(code, code.contains("idiv"));
+        assertFalse(code, code.contains("isub"));
+        CpUtils.matches(optimized, "iconst_3\\s+ishl");
+        CpUtils.assertSameOutput(getJasminResult("simplify/Identities.jmm"), optimized);
+    }
+
+    /**
+     * Test if products of a loop counter become additions next to the counter's own
+     */
+    @Test
+    public void section11_InductionVariables_ScaledIndicesAreAdded() {
+        JasminResult optimized = getJasminResultOpt("induction/Scaled.jmm");
+
+        String sum = CpUtils.getJasminLoop(optimized, "sum");
+        String strided = CpUtils.getJasminLoop(optimized, "strided");
+        assertFalse(sum, sum.contains("imul"));
+        assertFalse(strided, strided.contains("imul"));
+        assertTrue(strided, strided.contains("iinc"));
+        CpUtils.assertSameOutput(getJasminResult("induction/Scaled.jmm"), optimized);
+    }
+}